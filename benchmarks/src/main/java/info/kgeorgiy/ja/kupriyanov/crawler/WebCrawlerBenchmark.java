@@ -0,0 +1,134 @@
+package info.kgeorgiy.ja.kupriyanov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Result;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JMH benchmarks of {@link WebCrawler} over a {@link SimulatedWeb}, whose downloads block for
+ * a per-host latency as network calls do.
+ *
+ * <p>{@link #crawl} compares {@code platform} downloads on a fixed pool with {@code virtual} downloads,
+ * where the same {@code downloadThreads} bound is kept by the scheduler rather than by a pool size,
+ * and sweeps {@code downloadThreads} and {@code extractThreads}.
+ * Secondary results are rates: {@code pages} per second, {@code downloadMillis} and {@code extractMillis}
+ * of thread time per second spent downloading and extracting links.
+ * Per-host concurrency is checked against {@code maxConnections} after every trial.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+public class WebCrawlerBenchmark {
+    private static final long SEED = 2378;
+
+    /**
+     * Simulated web and the crawler under test.
+     */
+    @State(Scope.Benchmark)
+    public static class Web {
+        @Param({"platform", "virtual"})
+        public String mode;
+
+        @Param({"16", "256", "2048"})
+        public int downloadThreads;
+
+        @Param({"1", "4"})
+        public int extractThreads;
+
+        @Param({"8"})
+        public int maxConnections;
+
+        @Param({"20"})
+        public int latencyMillis;
+
+        @Param({"0.5"})
+        public double latencySpread;
+
+        @Param({"0.02"})
+        public double failureRate;
+
+        @Param({"40"})
+        public int hosts;
+
+        /**
+         * Pages on every host.
+         */
+        @Param({"500"})
+        public int pagesPerHost;
+
+        @Param({"8"})
+        public int links;
+
+        private SimulatedWeb web;
+        private WebCrawler crawler;
+
+        @Setup(Level.Trial)
+        public void open() {
+            web = new SimulatedWeb(hosts, pagesPerHost, links, Duration.ofMillis(latencyMillis),
+                    latencySpread, failureRate, SEED);
+            crawler = new WebCrawler(web, downloadThreads, extractThreads, maxConnections, "virtual".equals(mode));
+        }
+
+        @TearDown(Level.Trial)
+        public void close() {
+            crawler.close();
+            if (web.peakPerHost() > maxConnections) {
+                throw new IllegalStateException("Host limit exceeded: " + web.peakPerHost() + " > " + maxConnections);
+            }
+        }
+    }
+
+    /**
+     * Pages downloaded and thread time spent, reported as rates.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long pages;
+        public double downloadMillis;
+        public double extractMillis;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            pages = 0;
+            downloadMillis = 0;
+            extractMillis = 0;
+        }
+    }
+
+    @Benchmark
+    public Result crawl(Web web, Counters counters) {
+        CrawlerMetricsMBean metrics = web.crawler.metrics();
+        double download = metrics.getDownloadSeconds();
+        double extract = metrics.getExtractSeconds();
+        Result result = web.crawler.download(web.web.url(0), 4);
+        counters.pages += result.getDownloaded().size();
+        counters.downloadMillis += (metrics.getDownloadSeconds() - download) * 1000;
+        counters.extractMillis += (metrics.getExtractSeconds() - extract) * 1000;
+        return result;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(WebCrawlerBenchmark.class.getSimpleName()).build()).run();
+    }
+}
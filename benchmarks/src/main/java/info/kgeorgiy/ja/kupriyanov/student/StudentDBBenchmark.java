@@ -0,0 +1,195 @@
+package info.kgeorgiy.ja.kupriyanov.student;
+
+import info.kgeorgiy.java.advanced.student.GroupName;
+import info.kgeorgiy.java.advanced.student.Student;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * JMH benchmarks of {@link StudentDB} queries over large rosters.
+ *
+ * <p>{@link #findStudentsByGroup}, {@link #findStudentsByFirstName} and {@link #findStudentsByLastName}
+ * measure the filter-then-sort path against {@link #findStudentsByGroupDoubleSort},
+ * the former pipeline that sorted and filtered twice. {@link #main} runs this pair alone and fails
+ * unless the former is at least {@link #MIN_SPEEDUP} times faster for every roster size
+ * within the error bounds of both scores.
+ * {@link #getDistinctFirstNames}, {@link #getMaxStudentFirstName} and {@link #sortStudentsById} measure
+ * aggregations, which run in parallel above {@link StudentDB#PARALLEL_THRESHOLD} students;
+ * compare {@code size} values on both sides of it and runs with different {@code -t} and core counts.
+ * Benchmarks prefixed with {@code columnar} run the same queries over a {@link ColumnarStudentDB};
+ * run them with {@code -prof gc} to compare allocation rates.
+ * Results for regression gating are produced with {@code -rf json}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StudentDBBenchmark {
+    private static final long SEED = 2378;
+    /**
+     * Filter-then-sort is about 1.25 times faster than the double sort.
+     * The gate compares the slowest score within the error of {@link #findStudentsByGroup}
+     * with the fastest one of the double sort, so noise neither passes a regression nor fails the gate.
+     */
+    static final double MIN_SPEEDUP = 1.15;
+    /**
+     * Forks of the gate run, the error bounds of a single fork are too wide to gate on.
+     */
+    private static final int GATE_FORKS = 3;
+
+    /**
+     * Randomly generated roster with names drawn from small dictionaries, as in real rosters.
+     */
+    @State(Scope.Benchmark)
+    public static class Roster {
+        @Param({"10000", "1000000"})
+        public int size;
+
+        /**
+         * Number of distinct first and last names.
+         */
+        @Param({"1000"})
+        public int names;
+
+        private final StudentDB db = new StudentDB();
+        private List<Student> students;
+        private ColumnarStudentDB columns;
+
+        @Setup(Level.Trial)
+        public void create() {
+            Random random = new Random(SEED);
+            GroupName[] groups = GroupName.values();
+            students = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                students.add(new Student(random.nextInt(size), "First" + random.nextInt(names),
+                        "Last" + random.nextInt(names), groups[random.nextInt(groups.length)]));
+            }
+            columns = new ColumnarStudentDB(students);
+        }
+    }
+
+    @Benchmark
+    public List<Student> findStudentsByGroup(Roster roster) {
+        return roster.db.findStudentsByGroup(roster.students, GroupName.M3234);
+    }
+
+    @Benchmark
+    public List<Student> findStudentsByFirstName(Roster roster) {
+        return roster.db.findStudentsByFirstName(roster.students, "First7");
+    }
+
+    @Benchmark
+    public List<Student> findStudentsByLastName(Roster roster) {
+        return roster.db.findStudentsByLastName(roster.students, "Last7");
+    }
+
+    @Benchmark
+    public List<Student> findStudentsByGroupDoubleSort(Roster roster) {
+        Predicate<Student> predicate = student -> student.getGroup().equals(GroupName.M3234);
+        return roster.students.stream()
+                .filter(predicate)
+                .sorted(StudentDB.STUDENT_COMPARATOR)
+                .sorted(StudentDB.STUDENT_COMPARATOR)
+                .filter(predicate)
+                .collect(Collectors.toList());
+    }
+
+    @Benchmark
+    public Set<String> getDistinctFirstNames(Roster roster) {
+        return roster.db.getDistinctFirstNames(roster.students);
+    }
+
+    @Benchmark
+    public String getMaxStudentFirstName(Roster roster) {
+        return roster.db.getMaxStudentFirstName(roster.students);
+    }
+
+    @Benchmark
+    public List<Student> sortStudentsById(Roster roster) {
+        return roster.db.sortStudentsById(roster.students);
+    }
+
+    @Benchmark
+    public List<Student> columnarFindStudentsByGroup(Roster roster) {
+        return roster.columns.findStudentsByGroup(GroupName.M3234);
+    }
+
+    @Benchmark
+    public List<Student> columnarFindStudentsByFirstName(Roster roster) {
+        return roster.columns.findStudentsByFirstName("First7");
+    }
+
+    @Benchmark
+    public Set<String> columnarGetDistinctFirstNames(Roster roster) {
+        return roster.columns.getDistinctFirstNames();
+    }
+
+    @Benchmark
+    public List<Student> columnarSortStudentsById(Roster roster) {
+        return roster.columns.sortStudentsById();
+    }
+
+    /**
+     * Guards {@link #findStudentsByGroup} against the double sort coming back.
+     * Exits with status 1 unless it is at least {@link #MIN_SPEEDUP} times faster than
+     * {@link #findStudentsByGroupDoubleSort} at the bounds of the 99.9% confidence intervals JMH reports.
+     */
+    public static void main(String[] args) throws RunnerException {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(StudentDBBenchmark.class.getName() + "\\.findStudentsByGroup(DoubleSort)?$")
+                .forks(GATE_FORKS)
+                .build()).run();
+        Map<String, Result<?>> scores = new HashMap<>();
+        Map<String, Result<?>> baselines = new HashMap<>();
+        for (RunResult result : results) {
+            BenchmarkParams params = result.getParams();
+            (params.getBenchmark().endsWith("DoubleSort") ? baselines : scores)
+                    .put(params.getParam("size"), result.getPrimaryResult());
+        }
+        boolean passed = !scores.isEmpty() && scores.keySet().equals(baselines.keySet());
+        for (Map.Entry<String, Result<?>> entry : scores.entrySet()) {
+            Result<?> score = entry.getValue();
+            Result<?> baseline = baselines.get(entry.getKey());
+            if (baseline == null) {
+                continue;
+            }
+            double speedup = baseline.getScore() / score.getScore();
+            double worst = (baseline.getScore() - baseline.getScoreError()) / (score.getScore() + score.getScoreError());
+            System.out.printf("size=%s speedup=%.2f, at least %.2f%n", entry.getKey(), speedup, worst);
+            passed &= worst >= MIN_SPEEDUP;
+        }
+        if (!passed) {
+            System.err.println("findStudentsByGroup regressed: speedup over the double sort is not confidently above "
+                    + MIN_SPEEDUP);
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * JMH benchmarks of {@link Walk} hashing.
+ *
+ * <p>{@link #hashFiles} hashes synthetic file sets through {@link PathHasher} for every algorithm and I/O strategy,
+ * {@link #hashMemory} measures algorithms alone over an in-memory buffer.
+ * {@link #writeLines} measures {@link HashWriter} against {@link #writeLinesConcat}, the former
+ * {@code String.format} and concatenation output; run them with {@code -prof gc} to compare allocation rates.
+ * Secondary results {@code files} and {@code bytes} are files per second and bytes per second.
+ * Results for regression gating are produced with {@code -rf json}.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class WalkBenchmark {
+    private static final long SEED = 2378;
+
+    /**
+     * Synthetic files on disk and the hasher under test.
+     */
+    @State(Scope.Benchmark)
+    public static class FileSet {
+        /**
+         * {@code tiny}: 10000 files up to 1 KiB, {@code mixed}: 1000 files from 1 KiB to 8 MiB,
+         * {@code huge}: 2 files of 256 MiB.
+         */
+        @Param({"tiny", "mixed", "huge"})
+        public String set;
+
+        @Param({"jenkins", "xxhash64", "crc32c", "sha256"})
+        public String algorithm;
+
+        @Param({"stream", "channel", "mmap"})
+        public String io;
+
+        /**
+         * {@code cold} drops the OS page cache before each iteration, which needs root on Linux.
+         */
+        @Param({"warm", "cold"})
+        public String cache;
+
+        private Path root;
+        private final List<Path> files = new ArrayList<>();
+        private long bytes;
+        private PathHasher hasher;
+        private byte[] digest;
+
+        @Setup(Level.Trial)
+        public void create() throws IOException {
+            root = Files.createTempDirectory("walk-benchmark");
+            Random random = new Random(SEED);
+            switch (set) {
+                case "tiny" -> generate(random, 10_000, 0, 1 << 10);
+                case "mixed" -> generate(random, 1_000, 1 << 10, 8 << 20);
+                case "huge" -> generate(random, 2, 256 << 20, 256 << 20);
+                default -> throw new IllegalArgumentException("unknown file set " + set);
+            }
+            WalkOptions options = new WalkOptions();
+            options.algorithm = HashAlgorithm.of(algorithm);
+            options.io = IoStrategy.of(io);
+            options.mmapThreshold = 0;
+            hasher = new PathHasher(options, null, new WalkMetrics());
+            digest = hasher.newDigest();
+        }
+
+        private void generate(Random random, int count, int minSize, int maxSize) throws IOException {
+            byte[] chunk = new byte[1 << 16];
+            for (int i = 0; i < count; i++) {
+                long size = minSize == maxSize ? minSize
+                        : (long) (minSize + Math.pow(random.nextDouble(), 4) * (maxSize - minSize));
+                Path file = root.resolve("file" + i);
+                try (OutputStream out = Files.newOutputStream(file)) {
+                    for (long written = 0; written < size; written += chunk.length) {
+                        random.nextBytes(chunk);
+                        out.write(chunk, 0, (int) Math.min(chunk.length, size - written));
+                    }
+                }
+                files.add(file);
+                bytes += size;
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void dropCaches() {
+            if (!"cold".equals(cache)) {
+                return;
+            }
+            try {
+                new ProcessBuilder("sync").inheritIO().start().waitFor();
+                Files.writeString(Path.of("/proc/sys/vm/drop_caches"), "3");
+            } catch (IOException | SecurityException e) {
+                System.err.println("Cannot drop page cache, cold results are warm: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            try (Stream<Path> walk = Files.walk(root)) {
+                for (Path path : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                    Files.delete(path);
+                }
+            }
+            files.clear();
+            bytes = 0;
+        }
+    }
+
+    /**
+     * In-memory data for {@link #hashMemory}.
+     */
+    @State(Scope.Thread)
+    public static class Memory {
+        @Param({"jenkins", "xxhash64", "crc32c", "sha256"})
+        public String algorithm;
+
+        private FileHasher hasher;
+        private byte[] digest;
+        private ByteBuffer data;
+
+        @Setup(Level.Trial)
+        public void create() {
+            hasher = HashAlgorithm.of(algorithm).create();
+            digest = new byte[hasher.length()];
+            byte[] bytes = new byte[1 << 20];
+            new Random(SEED).nextBytes(bytes);
+            data = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        }
+    }
+
+    /**
+     * Output lines for {@link #writeLines} and {@link #writeLinesConcat}.
+     */
+    @State(Scope.Thread)
+    public static class Output {
+        private static final int LINES = 10_000;
+
+        private final List<String> paths = new ArrayList<>();
+        private final List<byte[]> digests = new ArrayList<>();
+        private HashWriter writer;
+        private BufferedWriter concatWriter;
+
+        @Setup(Level.Trial)
+        public void create() {
+            Random random = new Random(SEED);
+            for (int i = 0; i < LINES; i++) {
+                paths.add("/data/volume" + random.nextInt(16) + "/dir" + random.nextInt(1000) + "/file" + i + ".bin");
+                byte[] digest = new byte[Integer.BYTES];
+                random.nextBytes(digest);
+                digests.add(digest);
+            }
+            writer = new HashWriter(new WritableByteChannel() {
+                @Override
+                public int write(ByteBuffer src) {
+                    int count = src.remaining();
+                    src.position(src.limit());
+                    return count;
+                }
+
+                @Override
+                public boolean isOpen() {
+                    return true;
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+            concatWriter = new BufferedWriter(Writer.nullWriter());
+        }
+    }
+
+    /**
+     * Files and bytes processed, reported as rates.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Counters {
+        public long files;
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            files = 0;
+            bytes = 0;
+        }
+    }
+
+    @Benchmark
+    public void hashFiles(FileSet set, Counters counters, Blackhole blackhole) {
+        for (Path file : set.files) {
+            set.hasher.hash(file, set.digest);
+            blackhole.consume(set.digest);
+        }
+        counters.files += set.files.size();
+        counters.bytes += set.bytes;
+    }
+
+    @Benchmark
+    public void hashMemory(Memory memory, Counters counters, Blackhole blackhole) {
+        memory.hasher.update(memory.data.duplicate());
+        memory.hasher.digest(memory.digest);
+        blackhole.consume(memory.digest);
+        counters.bytes += memory.data.capacity();
+    }
+
+    @Benchmark
+    public void writeLines(Output output, Counters counters) throws IOException {
+        for (int i = 0; i < Output.LINES; i++) {
+            output.writer.write(output.digests.get(i), output.paths.get(i));
+        }
+        output.writer.flush();
+        counters.files += Output.LINES;
+    }
+
+    @Benchmark
+    public void writeLinesConcat(Output output, Counters counters) throws IOException {
+        for (int i = 0; i < Output.LINES; i++) {
+            byte[] digest = output.digests.get(i);
+            int hash = (digest[0] & 0xff) << 24 | (digest[1] & 0xff) << 16 | (digest[2] & 0xff) << 8 | digest[3] & 0xff;
+            String calcHash = String.format("%08x", hash);
+            output.concatWriter.write(calcHash + " " + output.paths.get(i) + "\n");
+        }
+        output.concatWriter.flush();
+        counters.files += Output.LINES;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(WalkBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,136 @@
+package info.kgeorgiy.ja.kupriyanov.crawler;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * {@link VisitedSet} backed by a scalable Bloom filter of (URL, depth) pairs.
+ * When the newest filter reaches its capacity of pairs a filter of twice the capacity and half the error rate
+ * is added, so the sum of error rates stays below the configured bound however many URLs are visited.
+ *
+ * <p>Visiting a URL at depth {@code d} adds pairs of the URL with every depth from 1 to {@code d},
+ * so a later visit checks a single pair: the URL is visited at depth {@code d} unless its pair with {@code d}
+ * is present. A URL takes as many pairs as its greatest depth; most URLs of a crawl are at depth 1.
+ */
+class BloomVisitedSet implements VisitedSet {
+    private static final double LN2_SQUARED = Math.log(2) * Math.log(2);
+
+    private volatile Filter[] filters;
+
+    BloomVisitedSet(int expectedUrls, double falsePositiveRate) {
+        if (!(falsePositiveRate > 0 && falsePositiveRate < 1)) {
+            throw new IllegalArgumentException("False positive rate should be between 0 and 1: " + falsePositiveRate);
+        }
+        filters = new Filter[]{new Filter(Math.max(1024, expectedUrls), falsePositiveRate / 2)};
+    }
+
+    @Override
+    public boolean visit(String url, int depth) {
+        long fingerprint = FingerprintVisitedSet.fingerprint(url);
+        long key = key(fingerprint, depth);
+        Filter[] current = filters;
+        for (Filter filter : current) {
+            if (filter.contains(key)) {
+                return false;
+            }
+        }
+        Filter last = current[current.length - 1];
+        int added = 0;
+        for (int d = 1; d < depth; d++) {
+            long lower = key(fingerprint, d);
+            if (!contains(current, lower) && last.add(lower)) {
+                added++;
+            }
+        }
+        // Pair with the depth itself is added last: of concurrent visits with the same depth only one sets it
+        boolean visited = last.add(key);
+        if (visited) {
+            added++;
+        }
+        if (added > 0 && last.count.addAndGet(added) >= last.capacity) {
+            grow(last);
+        }
+        return visited;
+    }
+
+    private static boolean contains(Filter[] filters, long key) {
+        for (Filter filter : filters) {
+            if (filter.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized void grow(Filter last) {
+        Filter[] current = filters;
+        if (current[current.length - 1] == last) {
+            Filter[] next = Arrays.copyOf(current, current.length + 1);
+            next[current.length] = new Filter(last.capacity * 2, last.falsePositiveRate / 2);
+            filters = next;
+        }
+    }
+
+    private static long key(long fingerprint, int depth) {
+        return mix(fingerprint + depth * 0x9e3779b97f4a7c15L);
+    }
+
+    private static long mix(long hash) {
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * Bloom filter of fixed capacity. Bit indices are derived from two hashes of the key
+     * by double hashing: {@code h1 + i * h2}.
+     */
+    private static class Filter {
+        private final long capacity;
+        private final double falsePositiveRate;
+        private final long bitCount;
+        private final int hashes;
+        private final AtomicLongArray bits;
+        private final AtomicLong count = new AtomicLong();
+
+        Filter(long capacity, double falsePositiveRate) {
+            this.capacity = capacity;
+            this.falsePositiveRate = falsePositiveRate;
+            long words = (long) Math.ceil(capacity * -Math.log(falsePositiveRate) / LN2_SQUARED / Long.SIZE);
+            if (words > Integer.MAX_VALUE - 8) {
+                throw new IllegalArgumentException("Bloom filter is too large: " + capacity + " URLs");
+            }
+            this.bits = new AtomicLongArray((int) Math.max(1, words));
+            this.bitCount = bits.length() * (long) Long.SIZE;
+            this.hashes = Math.max(1, (int) Math.ceil(-Math.log(falsePositiveRate) / Math.log(2)));
+        }
+
+        boolean contains(long key) {
+            long h2 = mix(key) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(key + i * h2, bitCount);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * Sets bits of the key.
+         *
+         * @return {@code true} if some bit was not set before
+         */
+        boolean add(long key) {
+            long h2 = mix(key) | 1;
+            boolean added = false;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(key + i * h2, bitCount);
+                long mask = 1L << bit;
+                added |= (bits.getAndAccumulate((int) (bit >>> 6), mask, (a, b) -> a | b) & mask) == 0;
+            }
+            return added;
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package info.kgeorgiy.ja.kupriyanov.crawler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Random;
+
+public class BloomVisitedSetTest {
+    private static final double RATE = 0.01;
+
+    @Test
+    public void testDepths() {
+        VisitedSet visited = VisitedSet.bloom(1000, RATE);
+        Assert.assertTrue(visited.visit("http://a/", 1));
+        Assert.assertFalse(visited.visit("http://a/", 1));
+        Assert.assertTrue(visited.visit("http://a/", 3));
+        Assert.assertFalse(visited.visit("http://a/", 2));
+        Assert.assertFalse(visited.visit("http://a/", 3));
+        Assert.assertTrue(visited.visit("http://a/", 4));
+        Assert.assertTrue(visited.visit("http://b/", 2));
+        Assert.assertFalse(visited.visit("http://b/", 1));
+    }
+
+    @Test
+    public void testFalsePositiveRate() {
+        // the set grows from 1024 URLs to more than 500 times as many
+        VisitedSet visited = VisitedSet.bloom(1000, RATE);
+        Random random = new Random(2378);
+        int urls = 600_000;
+        int skipped = 0;
+        for (int i = 0; i < urls; i++) {
+            int depth = random.nextInt(10) == 0 ? 2 + random.nextInt(5) : 1;
+            if (!visited.visit(url("p", i), depth)) {
+                skipped++;
+            }
+        }
+        assertRate("new URLs skipped", skipped, urls);
+
+        int probes = 100_000;
+        int unseen = 0;
+        int deeper = 0;
+        for (int i = 0; i < probes; i++) {
+            if (!visited.visit(url("q", i), 1)) {
+                unseen++;
+            }
+            if (!visited.visit(url("p", i), 8)) {
+                deeper++;
+            }
+        }
+        assertRate("unseen URLs skipped", unseen, probes);
+        assertRate("deeper revisits skipped", deeper, probes);
+    }
+
+    /**
+     * The bound is on probability, and with full older filters the rate comes close to it,
+     * so the count may exceed it by sampling noise: four standard deviations are allowed.
+     */
+    private static void assertRate(String message, int count, int trials) {
+        double expected = trials * RATE;
+        Assert.assertTrue(message + ": " + count + " of " + trials, count <= expected + 4 * Math.sqrt(expected));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidRate() {
+        VisitedSet.bloom(1000, 1);
+    }
+
+    private static String url(String prefix, int index) {
+        return "http://host" + index % 97 + "/" + prefix + index;
+    }
+}
@@ -0,0 +1,70 @@
+package info.kgeorgiy.ja.kupriyanov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+
+import java.time.Duration;
+import java.util.Objects;
+import java.util.function.ToLongFunction;
+
+/**
+ * Limits of a single {@link WebCrawler#download(String, int, java.util.Set, CrawlBudget) download}.
+ * When any limit is reached the crawl stops, running downloads are interrupted and the partial result is returned.
+ *
+ * @param timeout  wall-clock time limit counted from the start of the crawl, {@code null} for no limit
+ * @param maxPages maximal number of downloaded pages
+ * @param maxBytes maximal total size of downloaded pages, the page reaching it is still included
+ * @param sizeOf   size of a downloaded document, {@code null} if size is not limited
+ */
+public record CrawlBudget(Duration timeout, int maxPages, long maxBytes, ToLongFunction<Document> sizeOf) {
+    private static final CrawlBudget UNLIMITED = new CrawlBudget(null, Integer.MAX_VALUE, Long.MAX_VALUE, null);
+
+    public CrawlBudget {
+        if (maxPages < 1 || maxBytes < 1) {
+            throw new IllegalArgumentException("Budget limits should be positive");
+        }
+        if (timeout != null && timeout.isNegative()) {
+            throw new IllegalArgumentException("Negative timeout: " + timeout);
+        }
+    }
+
+    /**
+     * Returns budget without limits.
+     *
+     * @return unlimited budget
+     */
+    public static CrawlBudget unlimited() {
+        return UNLIMITED;
+    }
+
+    /**
+     * Returns this budget with the time limit.
+     *
+     * @param timeout maximal duration of the crawl
+     * @return new budget
+     */
+    public CrawlBudget withTimeout(Duration timeout) {
+        return new CrawlBudget(Objects.requireNonNull(timeout), maxPages, maxBytes, sizeOf);
+    }
+
+    /**
+     * Returns this budget with the page limit.
+     *
+     * @param maxPages maximal number of downloaded pages
+     * @return new budget
+     */
+    public CrawlBudget withMaxPages(int maxPages) {
+        return new CrawlBudget(timeout, maxPages, maxBytes, sizeOf);
+    }
+
+    /**
+     * Returns this budget with the size limit. {@link Document} does not expose its size,
+     * so it is computed by the given function, for example from the downloader's cache.
+     *
+     * @param maxBytes maximal total size of downloaded pages
+     * @param sizeOf   size of a downloaded document
+     * @return new budget
+     */
+    public CrawlBudget withMaxBytes(long maxBytes, ToLongFunction<Document> sizeOf) {
+        return new CrawlBudget(timeout, maxPages, maxBytes, Objects.requireNonNull(sizeOf));
+    }
+}
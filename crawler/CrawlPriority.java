@@ -0,0 +1,36 @@
+package info.kgeorgiy.ja.kupriyanov.crawler;
+
+/**
+ * Order in which {@link WebCrawler} downloads scheduled URLs.
+ * URLs with greater scores are downloaded first, URLs with equal scores in scheduling order.
+ */
+@FunctionalInterface
+public interface CrawlPriority {
+    /**
+     * Returns score of URL.
+     *
+     * @param url   URL to download
+     * @param depth remaining depth the URL is scheduled with
+     * @return score, greater is downloaded earlier
+     */
+    double score(String url, int depth);
+
+    /**
+     * Returns scheduling order.
+     *
+     * @return priority of equal scores
+     */
+    static CrawlPriority fifo() {
+        return (url, depth) -> 0;
+    }
+
+    /**
+     * Returns shallower pages first, pages closer to the start URL are usually the most valuable.
+     * Most URLs are then reached first by their shortest path, so their links are extracted only once.
+     *
+     * @return priority by remaining depth
+     */
+    static CrawlPriority shallowFirst() {
+        return (url, depth) -> depth;
+    }
+}
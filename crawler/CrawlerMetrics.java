@@ -0,0 +1,157 @@
+package info.kgeorgiy.ja.kupriyanov.crawler;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Collection;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live statistics of a {@link WebCrawler}: counters updated by crawl tasks
+ * and gauges read from the download scheduler and the extraction pool on demand.
+ */
+class CrawlerMetrics implements CrawlerMetricsMBean {
+    private static final int BUSIEST = 10;
+    private static final AtomicLong IDS = new AtomicLong();
+
+    private final long start = System.nanoTime();
+    private final LongAdder pages = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder downloadNanos = new LongAdder();
+    private final LongAdder extractNanos = new LongAdder();
+    private final DownloadScheduler scheduler;
+    private final ThreadPoolExecutor extractExecutor;
+    private final Collection<?> sessions;
+    private ObjectName name;
+
+    CrawlerMetrics(DownloadScheduler scheduler, ThreadPoolExecutor extractExecutor, Collection<?> sessions) {
+        this.scheduler = scheduler;
+        this.extractExecutor = extractExecutor;
+        this.sessions = sessions;
+    }
+
+    /**
+     * Records a download.
+     *
+     * @param nanos time spent in the downloader
+     * @param ok    whether the page was downloaded
+     */
+    void downloaded(long nanos, boolean ok) {
+        downloadNanos.add(nanos);
+        (ok ? pages : errors).increment();
+    }
+
+    /**
+     * Records link extraction.
+     *
+     * @param nanos time spent extracting links and scheduling them
+     */
+    void extracted(long nanos) {
+        extractNanos.add(nanos);
+    }
+
+    /**
+     * Registers this object in the platform MBean server, unless it is registered already.
+     * Failures, including denial by a security manager, are reported and otherwise ignored.
+     */
+    synchronized void register() {
+        if (name != null) {
+            return;
+        }
+        try {
+            name = new ObjectName("info.kgeorgiy.ja.kupriyanov.crawler:type=CrawlerMetrics,id="
+                    + ProcessHandle.current().pid() + "-" + IDS.incrementAndGet());
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        } catch (JMException | SecurityException e) {
+            System.err.println("Cannot register metrics MBean: " + e.getMessage());
+            name = null;
+        }
+    }
+
+    /**
+     * Unregisters the MBean.
+     */
+    synchronized void unregister() {
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException | SecurityException e) {
+                System.err.println("Cannot unregister metrics MBean: " + e.getMessage());
+            }
+            name = null;
+        }
+    }
+
+    /**
+     * @return one-line human-readable summary
+     */
+    String summary() {
+        return String.format("pages: %d (%.1f/s), errors: %d, downloads: %d running, %d queued, "
+                        + "extractions: %d running, %d queued, download: %.1f s, extract: %.1f s, peak per host: %d",
+                getPages(), getPagesPerSecond(), getErrors(), getRunningDownloads(), getQueuedDownloads(),
+                getRunningExtractions(), getQueuedExtractions(), getDownloadSeconds(), getExtractSeconds(),
+                getPeakHostConnections());
+    }
+
+    @Override
+    public long getPages() {
+        return pages.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public double getPagesPerSecond() {
+        return getPages() / (Math.max(1, System.nanoTime() - start) / 1e9);
+    }
+
+    @Override
+    public int getActiveSessions() {
+        return sessions.size();
+    }
+
+    @Override
+    public int getQueuedDownloads() {
+        return scheduler.queued();
+    }
+
+    @Override
+    public int getRunningDownloads() {
+        return scheduler.running();
+    }
+
+    @Override
+    public int getQueuedExtractions() {
+        return extractExecutor.getQueue().size();
+    }
+
+    @Override
+    public int getRunningExtractions() {
+        return extractExecutor.getActiveCount();
+    }
+
+    @Override
+    public double getDownloadSeconds() {
+        return downloadNanos.sum() / 1e9;
+    }
+
+    @Override
+    public double getExtractSeconds() {
+        return extractNanos.sum() / 1e9;
+    }
+
+    @Override
+    public int getPeakHostConnections() {
+        return scheduler.peakPerHost();
+    }
+
+    @Override
+    public String[] getBusiestHosts() {
+        return scheduler.busiestHosts(BUSIEST);
+    }
+}
@@ -0,0 +1,66 @@
+package info.kgeorgiy.ja.kupriyanov.crawler;
+
+/**
+ * JMX view of live {@link WebCrawler} statistics.
+ */
+public interface CrawlerMetricsMBean {
+    /**
+     * @return number of pages downloaded since the crawler was created
+     */
+    long getPages();
+
+    /**
+     * @return number of failed downloads
+     */
+    long getErrors();
+
+    /**
+     * @return average pages per second since the crawler was created
+     */
+    double getPagesPerSecond();
+
+    /**
+     * @return number of running {@code download} calls
+     */
+    int getActiveSessions();
+
+    /**
+     * @return number of downloads waiting for a free slot, their host or its politeness delay
+     */
+    int getQueuedDownloads();
+
+    /**
+     * @return number of running downloads
+     */
+    int getRunningDownloads();
+
+    /**
+     * @return number of documents waiting for link extraction
+     */
+    int getQueuedExtractions();
+
+    /**
+     * @return number of running link extractions
+     */
+    int getRunningExtractions();
+
+    /**
+     * @return total thread time spent in downloads, in seconds
+     */
+    double getDownloadSeconds();
+
+    /**
+     * @return total thread time spent in link extraction, in seconds
+     */
+    double getExtractSeconds();
+
+    /**
+     * @return maximal number of simultaneous downloads from a single host observed so far
+     */
+    int getPeakHostConnections();
+
+    /**
+     * @return hosts with the most queued and running downloads as {@code <host> running=<n> queued=<n>}
+     */
+    String[] getBusiestHosts();
+}
@@ -0,0 +1,71 @@
+package info.kgeorgiy.ja.kupriyanov.crawler;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stress run of a single {@link WebCrawler} over a {@link SimulatedWeb}: concurrent clients repeatedly crawl
+ * from random pages while live {@link CrawlerMetricsMBean metrics} are printed to {@code System.err} every second.
+ * The metrics are also registered as an MBean, so the run can be watched from a JMX console.
+ *
+ * <p>Usage: {@code CrawlerStress [seconds [clients [downloadThreads [extractThreads [maxConnections [depth]]]]]]}.
+ */
+public class CrawlerStress {
+    public static void main(String[] args) {
+        if (Arrays.stream(args).anyMatch(Objects::isNull)) {
+            System.err.println("Error: Null argument detected.");
+            return;
+        }
+        try {
+            int seconds = argument(args, 0, 10);
+            int clients = argument(args, 1, 16);
+            int downloadThreads = argument(args, 2, 64);
+            int extractThreads = argument(args, 3, Runtime.getRuntime().availableProcessors());
+            int maxConnections = argument(args, 4, 4);
+            int depth = argument(args, 5, 3);
+            SimulatedWeb web = new SimulatedWeb(200, 1000, 10, Duration.ofMillis(10), 0.7, 0.02, 2378);
+            run(web, seconds, clients, depth, new WebCrawler(web, downloadThreads, extractThreads, maxConnections, true));
+        } catch (NumberFormatException e) {
+            System.err.println("Error with parsing arg: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int argument(String[] args, int index, int defaultValue) {
+        return Optional.ofNullable(args.length > index ? args[index] : null).map(Integer::parseInt).orElse(defaultValue);
+    }
+
+    private static void run(SimulatedWeb web, int seconds, int clients, int depth, WebCrawler crawler)
+            throws InterruptedException {
+        crawler.registerMetrics();
+        CrawlerMetrics metrics = (CrawlerMetrics) crawler.metrics();
+        LongAdder crawls = new LongAdder();
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        ExecutorService clientPool = Executors.newFixedThreadPool(clients);
+        try (crawler) {
+            for (int i = 0; i < clients; i++) {
+                clientPool.execute(() -> {
+                    while (System.nanoTime() < end) {
+                        crawler.download(web.url(ThreadLocalRandom.current().nextInt(web.pages())), depth);
+                        crawls.increment();
+                    }
+                });
+            }
+            clientPool.shutdown();
+            while (!clientPool.awaitTermination(1, TimeUnit.SECONDS)) {
+                System.err.println(metrics.summary());
+                System.err.println("  busiest hosts: " + String.join(", ", metrics.getBusiestHosts()));
+            }
+        }
+        System.err.println("crawls: " + crawls.sum() + ", " + metrics.summary());
+        System.err.println("downloads: " + web.downloads() + ", simulated peak per host: " + web.peakPerHost());
+    }
+}
@@ -0,0 +1,278 @@
+package info.kgeorgiy.ja.kupriyanov.crawler;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs download tasks on an executor in priority order, with at most {@code maxRunning} tasks running at once,
+ * at most {@code maxPerHost} of them of the same host, and starts of tasks of the same host at least
+ * {@code politeness} apart.
+ *
+ * <p>Tasks wait in per-host priority queues instead of occupying executor threads. A host whose next task
+ * may start is kept in a ready set ordered by that task, so the best startable task overall is started first.
+ * Hosts waiting for the politeness delay are woken up by a timer, no worker thread sleeps.
+ * Hosts without queued or running tasks are forgotten once their delay has passed.
+ * Tasks belong to groups, and waiting tasks of a group may be dropped at once with {@link #cancel}.
+ */
+class DownloadScheduler {
+    private final Executor executor;
+    private final int maxRunning;
+    private final int maxPerHost;
+    private final long politenessNanos;
+    private final ScheduledExecutorService timer;
+
+    private final Map<String, Host> hosts = new HashMap<>();
+    private final TreeSet<Host> ready = new TreeSet<>((a, b) -> a.key.compareTo(b.key));
+    private long sequence;
+    private int queued;
+    private int running;
+    private int peakPerHost;
+
+    private static class Task implements Comparable<Task> {
+        private final double score;
+        private final long sequence;
+        private final Object group;
+        private final Runnable action;
+        private final Host host;
+
+        Task(double score, long sequence, Object group, Runnable action, Host host) {
+            this.score = score;
+            this.sequence = sequence;
+            this.group = group;
+            this.action = action;
+            this.host = host;
+        }
+
+        /**
+         * Greater score first, then submission order.
+         */
+        @Override
+        public int compareTo(Task other) {
+            int result = Double.compare(other.score, score);
+            return result != 0 ? result : Long.compare(sequence, other.sequence);
+        }
+    }
+
+    private static class Host {
+        private final String name;
+        private final PriorityQueue<Task> waiting = new PriorityQueue<>();
+        private int active;
+        private long nextStart;
+        /**
+         * Head of {@link #waiting} while the host is in the ready set, {@code null} otherwise.
+         */
+        private Task key;
+        private boolean wakeUpScheduled;
+
+        Host(String name) {
+            this.name = name;
+        }
+    }
+
+    /**
+     * Creates scheduler.
+     *
+     * @param executor   executor to run tasks on
+     * @param maxRunning maximal number of simultaneously running tasks
+     * @param maxPerHost maximal number of simultaneously running tasks per host
+     * @param politeness minimal interval between starts of tasks of the same host, in nanoseconds
+     */
+    DownloadScheduler(Executor executor, int maxRunning, int maxPerHost, long politeness) {
+        this.executor = executor;
+        this.maxRunning = Math.max(1, maxRunning);
+        this.maxPerHost = Math.max(1, maxPerHost);
+        this.politenessNanos = Math.max(0, politeness);
+        this.timer = politenessNanos == 0 ? null : Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "crawler-politeness-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues task.
+     *
+     * @param host  host the task works with
+     * @param score priority of the task, tasks with greater scores start first
+     * @param group group the task belongs to
+     * @param task  task to run
+     */
+    void execute(String host, double score, Object group, Runnable task) {
+        List<Task> started;
+        synchronized (this) {
+            Host state = hosts.computeIfAbsent(host, Host::new);
+            state.waiting.add(new Task(score, sequence++, group, task, state));
+            queued++;
+            update(state, System.nanoTime());
+            started = dispatch();
+        }
+        run(started);
+    }
+
+    /**
+     * Drops waiting tasks of the group, so they neither wait for free slots nor delay other tasks of their hosts.
+     * Running tasks are not affected.
+     *
+     * @param group group of tasks to drop
+     * @return dropped tasks, which are not run
+     */
+    List<Runnable> cancel(Object group) {
+        List<Runnable> dropped = new ArrayList<>();
+        List<Task> started;
+        synchronized (this) {
+            long now = System.nanoTime();
+            for (Host host : new ArrayList<>(hosts.values())) {
+                if (host.waiting.removeIf(task -> task.group == group && dropped.add(task.action))) {
+                    update(host, now);
+                }
+            }
+            queued -= dropped.size();
+            started = dispatch();
+        }
+        run(started);
+        return dropped;
+    }
+
+    /**
+     * @return number of tasks waiting to start
+     */
+    synchronized int queued() {
+        return queued;
+    }
+
+    /**
+     * @return number of running tasks
+     */
+    synchronized int running() {
+        return running;
+    }
+
+    /**
+     * @return maximal number of simultaneously running tasks of a single host observed so far
+     */
+    synchronized int peakPerHost() {
+        return peakPerHost;
+    }
+
+    /**
+     * Returns hosts with the most running and waiting tasks.
+     *
+     * @param limit maximal number of hosts to return
+     * @return hosts as {@code <host> running=<n> queued=<n>}, busiest first
+     */
+    synchronized String[] busiestHosts(int limit) {
+        return hosts.values().stream()
+                .sorted(Comparator.comparingInt((Host host) -> host.active + host.waiting.size()).reversed())
+                .limit(limit)
+                .map(host -> host.name + " running=" + host.active + " queued=" + host.waiting.size())
+                .toArray(String[]::new);
+    }
+
+    /**
+     * Stops the politeness timer. Tasks still waiting for their delay are not started.
+     */
+    void close() {
+        if (timer != null) {
+            timer.shutdownNow();
+        }
+    }
+
+    private void run(List<Task> tasks) {
+        for (Task task : tasks) {
+            executor.execute(() -> {
+                try {
+                    task.action.run();
+                } finally {
+                    finished(task.host);
+                }
+            });
+        }
+    }
+
+    private void finished(Host host) {
+        List<Task> started;
+        synchronized (this) {
+            host.active--;
+            running--;
+            update(host, System.nanoTime());
+            started = dispatch();
+        }
+        run(started);
+    }
+
+    private void wokeUp(Host host) {
+        List<Task> started;
+        synchronized (this) {
+            host.wakeUpScheduled = false;
+            update(host, System.nanoTime());
+            started = dispatch();
+        }
+        run(started);
+    }
+
+    /**
+     * Puts host into the ready set if its best task may start now, arranges a wake-up if it may start later.
+     */
+    private void update(Host host, long now) {
+        if (host.key != null) {
+            if (host.waiting.peek() == host.key) {
+                return;
+            }
+            ready.remove(host);
+            host.key = null;
+        }
+        boolean delayed = host.nextStart - now > 0;
+        if (host.waiting.isEmpty()) {
+            if (host.active == 0) {
+                if (delayed) {
+                    wakeUp(host, now);
+                } else {
+                    hosts.remove(host.name, host);
+                }
+            }
+        } else if (host.active < maxPerHost) {
+            if (delayed) {
+                wakeUp(host, now);
+            } else {
+                host.key = host.waiting.peek();
+                ready.add(host);
+            }
+        }
+    }
+
+    private void wakeUp(Host host, long now) {
+        if (!host.wakeUpScheduled) {
+            host.wakeUpScheduled = true;
+            timer.schedule(() -> wokeUp(host), host.nextStart - now, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Takes tasks to start while there are free slots.
+     */
+    private List<Task> dispatch() {
+        List<Task> started = new ArrayList<>();
+        long now = System.nanoTime();
+        while (running < maxRunning && !ready.isEmpty()) {
+            Host host = ready.pollFirst();
+            host.key = null;
+            started.add(host.waiting.poll());
+            queued--;
+            host.active++;
+            running++;
+            peakPerHost = Math.max(peakPerHost, host.active);
+            host.nextStart = now + politenessNanos;
+            update(host, now);
+        }
+        return started;
+    }
+}
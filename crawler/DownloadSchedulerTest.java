@@ -0,0 +1,156 @@
+package info.kgeorgiy.ja.kupriyanov.crawler;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DownloadSchedulerTest {
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+    private DownloadScheduler scheduler;
+
+    /**
+     * Closes in the order of {@link WebCrawler#close()}: finishing tasks may still start queued ones or use the timer.
+     */
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        Assert.assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        if (scheduler != null) {
+            scheduler.close();
+        }
+    }
+
+    @Test
+    public void testLimits() throws InterruptedException {
+        int maxRunning = 5;
+        int maxPerHost = 2;
+        scheduler = new DownloadScheduler(executor, maxRunning, maxPerHost, 0);
+        AtomicInteger running = new AtomicInteger();
+        AtomicInteger peak = new AtomicInteger();
+        Map<String, AtomicInteger> perHost = new ConcurrentHashMap<>();
+        Map<String, AtomicInteger> peakPerHost = new ConcurrentHashMap<>();
+        int hosts = 4;
+        int tasks = 20;
+        CountDownLatch done = new CountDownLatch(hosts * tasks);
+        for (int h = 0; h < hosts; h++) {
+            for (int i = 0; i < tasks; i++) {
+                String host = "host" + h;
+                scheduler.execute(host, 0, this, () -> {
+                    AtomicInteger active = perHost.computeIfAbsent(host, k -> new AtomicInteger());
+                    peakPerHost.computeIfAbsent(host, k -> new AtomicInteger()).accumulateAndGet(active.incrementAndGet(), Math::max);
+                    peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                    sleep(5);
+                    running.decrementAndGet();
+                    active.decrementAndGet();
+                    done.countDown();
+                });
+            }
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue("running: " + peak.get(), peak.get() <= maxRunning);
+        for (Map.Entry<String, AtomicInteger> entry : peakPerHost.entrySet()) {
+            Assert.assertTrue(entry.getKey() + ": " + entry.getValue(), entry.getValue().get() <= maxPerHost);
+        }
+        Assert.assertEquals(maxPerHost, scheduler.peakPerHost());
+        Assert.assertEquals(0, scheduler.queued());
+    }
+
+    @Test
+    public void testBusyHostDoesNotBlockOthers() throws InterruptedException {
+        scheduler = new DownloadScheduler(executor, 2, 1, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch other = new CountDownLatch(1);
+        CountDownLatch slow = new CountDownLatch(2);
+        for (int i = 0; i < 2; i++) {
+            scheduler.execute("slow", 0, this, () -> {
+                await(release);
+                slow.countDown();
+            });
+        }
+        scheduler.execute("fast", 0, this, other::countDown);
+        Assert.assertTrue(other.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(1, scheduler.queued());
+        release.countDown();
+        Assert.assertTrue(slow.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPriority() throws InterruptedException {
+        scheduler = new DownloadScheduler(executor, 1, 1, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        List<String> order = new ArrayList<>();
+        CountDownLatch done = new CountDownLatch(4);
+        scheduler.execute("host", 0, this, () -> await(release));
+        for (String name : List.of("low:1", "high:3", "middle:2", "high2:3")) {
+            scheduler.execute("host", Integer.parseInt(name.substring(name.indexOf(':') + 1)), this, () -> {
+                synchronized (order) {
+                    order.add(name);
+                }
+                done.countDown();
+            });
+        }
+        release.countDown();
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(List.of("high:3", "high2:3", "middle:2", "low:1"), order);
+    }
+
+    @Test
+    public void testPoliteness() throws InterruptedException {
+        long politeness = TimeUnit.MILLISECONDS.toNanos(20);
+        scheduler = new DownloadScheduler(executor, 4, 4, politeness);
+        int tasks = 5;
+        CountDownLatch done = new CountDownLatch(tasks);
+        long start = System.nanoTime();
+        for (int i = 0; i < tasks; i++) {
+            scheduler.execute("host", 0, this, done::countDown);
+        }
+        Assert.assertTrue(done.await(10, TimeUnit.SECONDS));
+        Assert.assertTrue(System.nanoTime() - start >= (tasks - 1) * politeness);
+    }
+
+    @Test
+    public void testCancel() throws InterruptedException {
+        scheduler = new DownloadScheduler(executor, 1, 1, 0);
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch kept = new CountDownLatch(1);
+        Object cancelled = new Object();
+        AtomicInteger ran = new AtomicInteger();
+        scheduler.execute("host", 0, this, () -> await(release));
+        Runnable dropped = ran::incrementAndGet;
+        scheduler.execute("host", 0, cancelled, dropped);
+        scheduler.execute("other", 0, cancelled, dropped);
+        scheduler.execute("host", 0, this, kept::countDown);
+        Assert.assertEquals(3, scheduler.queued());
+        Assert.assertEquals(List.of(dropped, dropped), scheduler.cancel(cancelled));
+        Assert.assertEquals(1, scheduler.queued());
+        release.countDown();
+        Assert.assertTrue(kept.await(10, TimeUnit.SECONDS));
+        Assert.assertEquals(0, ran.get());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
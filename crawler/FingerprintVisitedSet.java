@@ -0,0 +1,96 @@
+package info.kgeorgiy.ja.kupriyanov.crawler;
+
+/**
+ * {@link VisitedSet} of 64-bit URL fingerprints.
+ * Fingerprints are spread over segments by their high bits; every segment is a linear probing table
+ * of {@code long} fingerprints with a parallel array of unsigned byte depths, guarded by its own monitor.
+ * Depths above 255 are stored as 255.
+ */
+class FingerprintVisitedSet implements VisitedSet {
+    private static final int SEGMENT_BITS = 6;
+    private static final int MAX_DEPTH = 0xff;
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    FingerprintVisitedSet(int expectedUrls) {
+        int perSegment = Math.max(16, (int) Math.min(1 << 30, (Math.max(0, expectedUrls) >> SEGMENT_BITS) * 4L / 3));
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(Integer.highestOneBit(perSegment - 1) << 1);
+        }
+    }
+
+    @Override
+    public boolean visit(String url, int depth) {
+        long fingerprint = fingerprint(url);
+        return segments[(int) (fingerprint >>> (Long.SIZE - SEGMENT_BITS))].visit(fingerprint, Math.min(depth, MAX_DEPTH));
+    }
+
+    /**
+     * Returns 64-bit FNV-1a hash of URL characters with the MurmurHash3 finalizer applied.
+     *
+     * @param url URL to fingerprint
+     * @return fingerprint
+     */
+    static long fingerprint(String url) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < url.length(); i++) {
+            hash = (hash ^ url.charAt(i)) * 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * Open-addressing table. Slot is empty when its depth is zero, so every fingerprint including zero can be stored.
+     */
+    private static class Segment {
+        private long[] keys;
+        private byte[] depths;
+        private int size;
+
+        Segment(int capacity) {
+            keys = new long[capacity];
+            depths = new byte[capacity];
+        }
+
+        synchronized boolean visit(long fingerprint, int depth) {
+            int mask = keys.length - 1;
+            int slot = (int) fingerprint & mask;
+            while (depths[slot] != 0) {
+                if (keys[slot] == fingerprint) {
+                    if ((depths[slot] & MAX_DEPTH) >= depth) {
+                        return false;
+                    }
+                    depths[slot] = (byte) depth;
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = fingerprint;
+            depths[slot] = (byte) depth;
+            if (++size > keys.length / 4 * 3) {
+                grow();
+            }
+            return true;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            byte[] oldDepths = depths;
+            keys = new long[oldKeys.length * 2];
+            depths = new byte[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldDepths[i] != 0) {
+                    int slot = (int) oldKeys[i] & mask;
+                    while (depths[slot] != 0) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    depths[slot] = oldDepths[i];
+                }
+            }
+        }
+    }
+}
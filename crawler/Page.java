@@ -0,0 +1,25 @@
+package info.kgeorgiy.ja.kupriyanov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+
+import java.io.IOException;
+
+/**
+ * Outcome of one download emitted by {@link WebCrawler#stream}.
+ * Every URL is emitted at most once, with the remaining depth of its first visit.
+ *
+ * @param url      downloaded URL
+ * @param depth    remaining depth the URL was downloaded with
+ * @param document downloaded document, {@code null} if download failed
+ * @param error    download error, {@code null} if download succeeded
+ */
+public record Page(String url, int depth, Document document, IOException error) {
+    /**
+     * Returns whether the page was downloaded.
+     *
+     * @return {@code true} if there is no error
+     */
+    public boolean downloaded() {
+        return error == null;
+    }
+}
@@ -0,0 +1,138 @@
+package info.kgeorgiy.ja.kupriyanov.crawler;
+
+import info.kgeorgiy.java.advanced.crawler.Document;
+import info.kgeorgiy.java.advanced.crawler.Downloader;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-memory {@link Downloader} over a generated web, for benchmarks and stress runs of {@link WebCrawler}.
+ *
+ * <p>Page {@code p} is {@code http://host<p % hosts>.sim/page<p>}. Links of every page and the set of broken pages
+ * are generated from the seed, so a crawl of the same web always has the same result.
+ * Every host gets its own median latency, log-normally spread around the configured one;
+ * every download sleeps for a log-normally spread time around its host median.
+ * The largest number of simultaneous downloads from a host is recorded.
+ */
+public class SimulatedWeb implements Downloader {
+    private final int hosts;
+    private final int[][] links;
+    private final boolean[] broken;
+    private final long[] hostMedianNanos;
+    private final double latencySpread;
+    private final AtomicIntegerArray active;
+    private final AtomicInteger peakPerHost = new AtomicInteger();
+    private final LongAdder downloads = new LongAdder();
+
+    /**
+     * Generates web.
+     *
+     * @param hosts         number of hosts
+     * @param pagesPerHost  number of pages on every host
+     * @param linksPerPage  number of links on every page, to uniformly chosen pages
+     * @param medianLatency median download latency
+     * @param latencySpread standard deviation of the latency logarithm, both between hosts and between downloads
+     * @param failureRate   fraction of pages whose download fails
+     * @param seed          seed of the generator
+     */
+    public SimulatedWeb(int hosts, int pagesPerHost, int linksPerPage, Duration medianLatency,
+                        double latencySpread, double failureRate, long seed) {
+        this.hosts = hosts;
+        this.latencySpread = latencySpread;
+        int pages = hosts * pagesPerHost;
+        Random random = new Random(seed);
+        links = new int[pages][linksPerPage];
+        broken = new boolean[pages];
+        for (int page = 0; page < pages; page++) {
+            for (int i = 0; i < linksPerPage; i++) {
+                links[page][i] = random.nextInt(pages);
+            }
+            broken[page] = random.nextDouble() < failureRate;
+        }
+        hostMedianNanos = new long[hosts];
+        for (int host = 0; host < hosts; host++) {
+            hostMedianNanos[host] = (long) (medianLatency.toNanos() * Math.exp(latencySpread * random.nextGaussian()));
+        }
+        active = new AtomicIntegerArray(hosts);
+    }
+
+    /**
+     * Returns URL of the page.
+     *
+     * @param page page number
+     * @return page URL
+     */
+    public String url(int page) {
+        return "http://host" + page % hosts + ".sim/page" + page;
+    }
+
+    /**
+     * @return number of pages
+     */
+    public int pages() {
+        return links.length;
+    }
+
+    /**
+     * @return number of downloads so far, including failed ones
+     */
+    public long downloads() {
+        return downloads.sum();
+    }
+
+    /**
+     * @return maximal number of simultaneous downloads from a single host so far
+     */
+    public int peakPerHost() {
+        return peakPerHost.get();
+    }
+
+    @Override
+    public Document download(String url) throws IOException {
+        int page = page(url);
+        int host = page % hosts;
+        downloads.increment();
+        peakPerHost.accumulateAndGet(active.incrementAndGet(host), Math::max);
+        try {
+            long nanos = (long) (hostMedianNanos[host] * Math.exp(latencySpread * ThreadLocalRandom.current().nextGaussian()));
+            Thread.sleep(nanos / 1_000_000, (int) (nanos % 1_000_000));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while downloading " + url);
+        } finally {
+            active.decrementAndGet(host);
+        }
+        if (broken[page]) {
+            throw new IOException("Simulated failure of " + url);
+        }
+        return () -> {
+            List<String> result = new ArrayList<>(links[page].length);
+            for (int link : links[page]) {
+                result.add(url(link));
+            }
+            return result;
+        };
+    }
+
+    private int page(String url) throws IOException {
+        int index = url.lastIndexOf("/page");
+        try {
+            int page = index < 0 ? -1 : Integer.parseInt(url, index + 5, url.length(), 10);
+            if (page >= 0 && page < links.length && url.equals(url(page))) {
+                return page;
+            }
+        } catch (NumberFormatException ignored) {
+            // reported below
+        }
+        throw new IOException("Not found: " + url);
+    }
+}
@@ -0,0 +1,139 @@
+package info.kgeorgiy.ja.kupriyanov.crawler;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+
+/**
+ * Checks whether a string contains any of the given substrings.
+ * Patterns are compiled into an Aho&ndash;Corasick automaton with all transitions precomputed,
+ * so a check reads every character once, whatever the number of patterns is.
+ * Characters are mapped to columns of the transition table, characters absent from patterns share column zero.
+ */
+class SubstringMatcher {
+    private static final int ASCII = 128;
+
+    private final Set<String> patterns;
+    private final int[] asciiColumns = new int[ASCII];
+    private final Map<Character, Integer> otherColumns = new HashMap<>();
+    private final int columns;
+    private final int[] transitions;
+    private final boolean[] terminal;
+
+    /**
+     * Compiles patterns.
+     *
+     * @param patterns substrings to look for
+     */
+    SubstringMatcher(Set<String> patterns) {
+        this.patterns = Set.copyOf(patterns);
+        int column = 1;
+        for (String pattern : this.patterns) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c < ASCII) {
+                    if (asciiColumns[c] == 0) {
+                        asciiColumns[c] = column++;
+                    }
+                } else if (otherColumns.putIfAbsent(c, column) == null) {
+                    column++;
+                }
+            }
+        }
+        columns = column;
+
+        List<int[]> trie = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+        trie.add(newRow());
+        ends.add(false);
+        for (String pattern : this.patterns) {
+            int state = 0;
+            for (int i = 0; i < pattern.length(); i++) {
+                int c = column(pattern.charAt(i));
+                if (trie.get(state)[c] < 0) {
+                    trie.get(state)[c] = trie.size();
+                    trie.add(newRow());
+                    ends.add(false);
+                }
+                state = trie.get(state)[c];
+            }
+            ends.set(state, true);
+        }
+
+        int states = trie.size();
+        transitions = new int[states * columns];
+        terminal = new boolean[states];
+        int[] failure = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        terminal[0] = ends.get(0);
+        for (int c = 0; c < columns; c++) {
+            int child = trie.get(0)[c];
+            if (child < 0) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = child;
+                failure[child] = 0;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.remove();
+            terminal[state] = ends.get(state) || terminal[failure[state]];
+            for (int c = 0; c < columns; c++) {
+                int child = trie.get(state)[c];
+                int fallback = transitions[failure[state] * columns + c];
+                if (child < 0) {
+                    transitions[state * columns + c] = fallback;
+                } else {
+                    transitions[state * columns + c] = child;
+                    failure[child] = fallback;
+                    queue.add(child);
+                }
+            }
+        }
+    }
+
+    private int[] newRow() {
+        int[] row = new int[columns];
+        Arrays.fill(row, -1);
+        return row;
+    }
+
+    private int column(char c) {
+        return c < ASCII ? asciiColumns[c] : otherColumns.getOrDefault(c, 0);
+    }
+
+    /**
+     * Returns patterns this matcher was compiled from.
+     *
+     * @return unmodifiable set of patterns
+     */
+    Set<String> patterns() {
+        return patterns;
+    }
+
+    /**
+     * Checks whether text contains any pattern.
+     *
+     * @param text text to check
+     * @return {@code true} if some pattern is a substring of the text
+     */
+    boolean matches(String text) {
+        int state = 0;
+        if (terminal[state]) {
+            return true;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            state = transitions[state * columns + column(text.charAt(i))];
+            if (terminal[state]) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,67 @@
+package info.kgeorgiy.ja.kupriyanov.crawler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Set of URLs seen by a crawl session, together with the maximal remaining depth each URL was scheduled with.
+ * A URL reached again with a greater remaining depth is visited once more and its links are scheduled
+ * with that depth, so results match level-by-level traversal. Implementations are thread-safe.
+ */
+public interface VisitedSet {
+    /**
+     * Marks URL as visited with the given remaining depth.
+     *
+     * @param url   URL to visit
+     * @param depth remaining depth
+     * @return {@code true} if the URL should be visited: it was not seen yet or only with a smaller depth
+     */
+    boolean visit(String url, int depth);
+
+    /**
+     * Returns set of full URL strings, about 100 bytes per URL and more.
+     *
+     * @return new exact visited set
+     */
+    static VisitedSet strings() {
+        ConcurrentMap<String, Integer> depths = new ConcurrentHashMap<>();
+        return (url, depth) -> {
+            Integer previous = depths.putIfAbsent(url, depth);
+            while (previous != null) {
+                if (previous >= depth) {
+                    return false;
+                }
+                if (depths.replace(url, previous, depth)) {
+                    return true;
+                }
+                previous = depths.putIfAbsent(url, depth);
+            }
+            return true;
+        };
+    }
+
+    /**
+     * Returns set of 64-bit URL fingerprints in a primitive open-addressing table, 12 to 24 bytes per URL.
+     * Two URLs with equal fingerprints are treated as one, which for 100M URLs happens with probability below 0.1%.
+     *
+     * @param expectedUrls expected number of URLs, table grows beyond it
+     * @return new fingerprint visited set
+     */
+    static VisitedSet fingerprints(int expectedUrls) {
+        return new FingerprintVisitedSet(expectedUrls);
+    }
+
+    /**
+     * Returns scalable Bloom filter of URLs. A URL is skipped as visited with probability
+     * at most {@code falsePositiveRate} although it was not seen with that depth or a greater one.
+     * Memory is about {@code 1.44 * log2(1 / falsePositiveRate)} bits per URL and remaining depth
+     * it was visited with, close to that per URL as most URLs are visited with depth 1.
+     *
+     * @param expectedUrls      number of URLs the first filter is sized for, next filters double it
+     * @param falsePositiveRate overall false positive rate bound, between 0 and 1 exclusive
+     * @return new probabilistic visited set
+     */
+    static VisitedSet bloom(int expectedUrls, double falsePositiveRate) {
+        return new BloomVisitedSet(expectedUrls, falsePositiveRate);
+    }
+}
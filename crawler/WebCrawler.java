@@ -1,102 +1,554 @@
 package info.kgeorgiy.ja.kupriyanov.crawler;
 
 import info.kgeorgiy.java.advanced.crawler.*;
-import info.kgeorgiy.java.advanced.crawler.NewCrawler;
 import info.kgeorgiy.java.advanced.crawler.Result;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.MalformedURLException;
+import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
-public class WebCrawler implements NewCrawler {
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+public class WebCrawler implements AdvancedCrawler {
     private final ExecutorService downloadExecutor;
-    private final ExecutorService extractExecutor;
+    private final ThreadPoolExecutor extractExecutor;
     private final Downloader downloader;
+    private final DownloadScheduler scheduler;
+    /**
+     * Sessions in progress, awaited by {@link #close()}.
+     */
+    private final Set<Session> sessions = ConcurrentHashMap.newKeySet();
+    private final Supplier<VisitedSet> visitedSets;
+    private final CrawlPriority priority;
+    private final CrawlerMetrics metrics;
+    /**
+     * Exclusions of the last session, reused while the next sessions pass the same exclusions.
+     */
+    private volatile SubstringMatcher lastExclusions = new SubstringMatcher(Set.of());
+    private volatile boolean closed;
 
     public WebCrawler(Downloader downloader, int downloadThreads, int extractThreads, int maxConnections) {
+        this(downloader, downloadThreads, extractThreads, maxConnections, false);
+    }
+
+    /**
+     * Creates crawler.
+     *
+     * @param downloader      downloader of pages
+     * @param downloadThreads maximal number of simultaneous downloads
+     * @param extractThreads  number of threads extracting links
+     * @param maxConnections  maximal number of simultaneous downloads per host
+     * @param virtualThreads  if {@code true}, every download runs on its own virtual thread and blocking
+     *                        {@link Downloader#download} calls do not pin platform threads;
+     *                        otherwise downloads run on a pool of {@code downloadThreads} platform threads.
+     *                        In both modes at most {@code downloadThreads} downloads run at once
+     */
+    public WebCrawler(Downloader downloader, int downloadThreads, int extractThreads, int maxConnections,
+                      boolean virtualThreads) {
+        this(downloader, downloadThreads, extractThreads, maxConnections, virtualThreads, VisitedSet::strings);
+    }
+
+    /**
+     * Creates crawler with the given visited set strategy.
+     *
+     * @param downloader      downloader of pages
+     * @param downloadThreads maximal number of simultaneous downloads
+     * @param extractThreads  number of threads extracting links
+     * @param maxConnections  maximal number of simultaneous downloads per host
+     * @param virtualThreads  whether downloads run on virtual threads
+     * @param visitedSets     creates visited set of every {@link #download} session,
+     *                        for example {@code () -> VisitedSet.fingerprints(1 << 20)}
+     */
+    public WebCrawler(Downloader downloader, int downloadThreads, int extractThreads, int maxConnections,
+                      boolean virtualThreads, Supplier<VisitedSet> visitedSets) {
+        this(downloader, downloadThreads, extractThreads, maxConnections, virtualThreads, visitedSets,
+                CrawlPriority.fifo(), Duration.ZERO);
+    }
+
+    /**
+     * Creates crawler with the given scheduling.
+     *
+     * @param downloader      downloader of pages
+     * @param downloadThreads maximal number of simultaneous downloads
+     * @param extractThreads  number of threads extracting links
+     * @param maxConnections  maximal number of simultaneous downloads per host
+     * @param virtualThreads  whether downloads run on virtual threads
+     * @param visitedSets     creates visited set of every {@link #download} session
+     * @param priority        order of waiting downloads, for example {@link CrawlPriority#shallowFirst()}
+     * @param politeness      minimal interval between starts of downloads from the same host
+     */
+    public WebCrawler(Downloader downloader, int downloadThreads, int extractThreads, int maxConnections,
+                      boolean virtualThreads, Supplier<VisitedSet> visitedSets,
+                      CrawlPriority priority, Duration politeness) {
         this.downloader = downloader;
-        this.downloadExecutor = Executors.newFixedThreadPool(downloadThreads);
-        this.extractExecutor = Executors.newFixedThreadPool(extractThreads);
+        this.visitedSets = visitedSets;
+        this.priority = priority;
+        this.downloadExecutor = virtualThreads
+                ? Executors.newVirtualThreadPerTaskExecutor()
+                : Executors.newFixedThreadPool(downloadThreads);
+        this.extractExecutor = new ThreadPoolExecutor(extractThreads, extractThreads,
+                0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+        this.scheduler = new DownloadScheduler(downloadExecutor, downloadThreads, maxConnections, politeness.toNanos());
+        this.metrics = new CrawlerMetrics(scheduler, extractExecutor, sessions);
     }
 
+    /**
+     * Crawls from {@code startUrl}. Crawler is reusable: every call is an independent session
+     * with its own visited set and result, and sessions may run concurrently on the same executors.
+     *
+     * @throws IllegalStateException if the crawler is closed
+     */
     @Override
     public Result download(String startUrl, int depth, Set<String> exclusions) {
-        Set<String> visitedUrls = ConcurrentHashMap.newKeySet();
-        Queue<String> urlQueue = new ConcurrentLinkedQueue<>();
-        Queue<Future<List<String>>> extractionQueue = new ConcurrentLinkedQueue<>();
-        List<String> downloadedPages = Collections.synchronizedList(new ArrayList<>());
+        return download(startUrl, depth, exclusions, CrawlBudget.unlimited());
+    }
+
+    /**
+     * Crawls from {@code startUrl} until the crawl is complete or the budget is exhausted.
+     * In the latter case downloads still waiting are dropped, running ones are interrupted
+     * and the result contains pages downloaded before that.
+     *
+     * @param startUrl URL to start from
+     * @param depth    crawl depth
+     * @param budget   limits of the crawl
+     * @return downloaded pages and download errors
+     * @throws IllegalStateException if the crawler is closed
+     */
+    public Result download(String startUrl, int depth, CrawlBudget budget) {
+        return download(startUrl, depth, Set.of(), budget);
+    }
+
+    /**
+     * Crawls from {@code startUrl} until the crawl is complete or the budget is exhausted.
+     * If the calling thread is interrupted, the crawl is stopped the same way.
+     *
+     * @param startUrl   URL to start from
+     * @param depth      crawl depth
+     * @param exclusions URLs containing any of these substrings are not downloaded
+     * @param budget     limits of the crawl
+     * @return downloaded pages and download errors
+     * @throws IllegalStateException if the crawler is closed
+     * @see #download(String, int, CrawlBudget)
+     */
+    public Result download(String startUrl, int depth, Set<String> exclusions, CrawlBudget budget) {
+        return collect(startUrl, depth, exclusions, null, budget);
+    }
+
+    /**
+     * Crawls from {@code startUrl} downloading only pages of the given hosts.
+     * Links to other hosts are dropped before any download is scheduled.
+     *
+     * @param startUrl URL to start from
+     * @param depth    crawl depth
+     * @param hosts    hosts to download from
+     * @return downloaded pages and download errors
+     * @throws IllegalStateException if the crawler is closed
+     */
+    @Override
+    public Result advancedDownload(String startUrl, int depth, List<String> hosts) {
+        return collect(startUrl, depth, Set.of(), Set.copyOf(hosts), CrawlBudget.unlimited());
+    }
+
+    private Result collect(String startUrl, int depth, Set<String> exclusions, Set<String> hosts, CrawlBudget budget) {
+        Set<String> downloadedPages = ConcurrentHashMap.newKeySet();
         Map<String, IOException> failedDownloads = new ConcurrentHashMap<>();
+        start(startUrl, depth, exclusions, hosts, budget, page -> {
+            if (page.downloaded()) {
+                downloadedPages.add(page.url());
+            } else {
+                failedDownloads.put(page.url(), page.error());
+            }
+            return true;
+        }).await(budget.timeout());
+        return new Result(new ArrayList<>(downloadedPages), new HashMap<>(failedDownloads));
+    }
 
-        urlQueue.add(startUrl);
-        visitedUrls.add(startUrl);
-        int currentDepth = 0;
-        while (currentDepth < depth) {
-            List<Future<Document>> downloadFutures = new ArrayList<>();
-            CompletionService<Document> completionService = new ExecutorCompletionService<>(downloadExecutor);
-
-            while (!urlQueue.isEmpty()) {
-                final String currentUrl = urlQueue.poll();
-                if (exclusions.stream().anyMatch(currentUrl::contains)) {
-                    continue;
-                }
-                Future<Document> document = completionService.submit(() -> {
-                    try {
-                        Document doc = downloader.download(currentUrl);
-                        if (doc == null) {
-                            return null;
-                        } else {
-                            downloadedPages.add(currentUrl);
-                            return doc;
-                        }
-                    } catch (IOException e) {
-                        failedDownloads.put(currentUrl, e);
-                        return null;
+    /**
+     * Returns publisher of pages crawled from {@code startUrl}. Publisher is cold:
+     * every subscriber gets its own crawl session, started on subscription.
+     * Every download is emitted as soon as it finishes, nothing is accumulated.
+     *
+     * <p>Pages are buffered up to {@link Flow#defaultBufferSize()} per subscriber.
+     * While the buffer is full download threads wait, so a slow subscriber slows the whole frontier down.
+     * Cancelling the subscription stops the crawl; {@code onComplete} is signalled
+     * after the last running download. If the crawler is closed, {@code onError} is signalled with {@link IllegalStateException}.
+     *
+     * @param startUrl   URL to start from
+     * @param depth      crawl depth
+     * @param exclusions URLs containing any of these substrings are not downloaded
+     * @return publisher of downloaded pages and download errors
+     */
+    public Flow.Publisher<Page> stream(String startUrl, int depth, Set<String> exclusions) {
+        return subscriber -> {
+            SubmissionPublisher<Page> publisher = new SubmissionPublisher<>();
+            publisher.subscribe(subscriber);
+            try {
+                start(startUrl, depth, exclusions, null, CrawlBudget.unlimited(), page -> {
+                    if (!publisher.hasSubscribers()) {
+                        return false;
                     }
-                });
-                downloadFutures.add(document);
+                    publisher.submit(page);
+                    return true;
+                }).completion.thenRun(publisher::close);
+            } catch (IllegalStateException e) {
+                publisher.closeExceptionally(e);
             }
-            for (Future<Document> future : downloadFutures) {
+        };
+    }
+
+    /**
+     * Starts crawl session.
+     *
+     * @param hosts hosts to download from, {@code null} for any host
+     * @param sink  receives every download until the session is stopped, returns {@code false} to stop it
+     * @throws IllegalStateException if the crawler is closed
+     */
+    private Session start(String startUrl, int depth, Set<String> exclusions, Set<String> hosts, CrawlBudget budget,
+                          Predicate<Page> sink) {
+        SubstringMatcher matcher = lastExclusions;
+        if (!matcher.patterns().equals(exclusions)) {
+            matcher = new SubstringMatcher(exclusions);
+            lastExclusions = matcher;
+        }
+        Session session = new Session(depth, matcher, hosts, budget, sink);
+        sessions.add(session);
+        if (closed) {
+            sessions.remove(session);
+            throw new IllegalStateException("Crawler is closed");
+        }
+        session.schedule(startUrl, depth);
+        session.finish();
+        return session;
+    }
+
+    /**
+     * State of a single crawl. Every link is scheduled as soon as it is extracted, tagged with its remaining depth,
+     * so there are no barriers between depth levels. Completion is detected by a counter of scheduled tasks.
+     *
+     * <p>Every URL is downloaded and reported at most once. A URL reached again with a greater remaining depth
+     * reuses the document of its first download: only its links are extracted and scheduled once more.
+     * Only the visited set lives as long as the session: a downloaded document is kept only while
+     * a task of a smaller depth that could reach its URL again with a greater depth is not finished.
+     *
+     * <p>A stopped session schedules nothing, drops queued downloads, interrupts running ones
+     * and no longer reports pages.
+     */
+    private class Session {
+        private final SubstringMatcher exclusions;
+        /**
+         * Hosts to download from, {@code null} for any host.
+         */
+        private final Set<String> hosts;
+        private final CrawlBudget budget;
+        private final Predicate<Page> sink;
+        private final VisitedSet visitedUrls = visitedSets.get();
+        /**
+         * Downloads in flight and finished ones that may still be reached again with a greater depth,
+         * completed with the document or {@code null} if it is not downloaded.
+         */
+        private final ConcurrentMap<String, CompletableFuture<Document>> documents = new ConcurrentHashMap<>();
+        /**
+         * URLs of finished downloads kept in {@link #documents}, by remaining depth of their first visit.
+         */
+        private final List<Queue<String>> finished = new ArrayList<>();
+        private volatile boolean stopped;
+        private final AtomicInteger pages = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+        /**
+         * Threads running downloads of this session, guarded by itself.
+         */
+        private final Set<Thread> downloading = new HashSet<>();
+        /**
+         * Tasks scheduled but not finished, plus one held by the session until the start URL is scheduled.
+         */
+        private final AtomicInteger inFlight = new AtomicInteger(1);
+        /**
+         * Tasks scheduled but not finished, by remaining depth of their URL.
+         */
+        private final AtomicIntegerArray depthTasks;
+        /**
+         * All tasks with this remaining depth or a greater one are finished. Tasks are only scheduled
+         * by unfinished tasks of a greater depth, so the bound never grows.
+         */
+        private volatile int finishedDepth;
+        /**
+         * Completed when all tasks are finished.
+         */
+        private final CompletableFuture<Void> completion = new CompletableFuture<>();
+        /**
+         * Completed when all tasks are finished or the session is stopped.
+         */
+        private final CompletableFuture<Void> end = new CompletableFuture<>();
+
+        Session(int depth, SubstringMatcher exclusions, Set<String> hosts, CrawlBudget budget, Predicate<Page> sink) {
+            int levels = Math.max(depth, 0) + 1;
+            for (int i = 0; i < levels; i++) {
+                finished.add(new ConcurrentLinkedQueue<>());
+            }
+            this.depthTasks = new AtomicIntegerArray(levels);
+            this.finishedDepth = levels;
+            this.exclusions = exclusions;
+            this.hosts = hosts;
+            this.budget = budget;
+            this.sink = sink;
+        }
+
+        void schedule(String url, int depth) {
+            if (stopped || depth < 1 || !visitedUrls.visit(url, depth) || exclusions.matches(url)) {
+                return;
+            }
+            CompletableFuture<Document> fetch = new CompletableFuture<>();
+            CompletableFuture<Document> previous = documents.putIfAbsent(url, fetch);
+            if (depth > 1) {
+                started(depth);
+                (previous != null ? previous : fetch).thenAccept(document -> extract(url, document, depth));
+            }
+            if (previous != null) {
+                return;
+            }
+            String host;
+            try {
+                host = URLUtils.getHost(url);
+            } catch (MalformedURLException e) {
+                emit(new Page(url, depth, null, e));
+                complete(url, depth, fetch, null);
+                return;
+            }
+            if (hosts != null && !hosts.contains(host)) {
+                complete(url, depth, fetch, null);
+                return;
+            }
+            started(depth);
+            scheduler.execute(host, priority.score(url, depth), this, () -> {
+                Document document = null;
                 try {
-                    Document doc = future.get();
-                    if (doc != null) {
-                        extractionQueue.add(extractExecutor.submit(doc::extractLinks));
+                    if (stopped) {
+                        return;
                     }
-                } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
+                    document = download(url);
+                    emit(new Page(url, depth, document, null));
+                } catch (IOException e) {
+                    emit(new Page(url, depth, null, e));
+                } finally {
+                    complete(url, depth, fetch, document);
+                    finish(depth);
                 }
+            });
+            if (stopped) {
+                // Stopped while scheduling, the download may have been queued after the session dropped its queue
+                dropQueued();
+            }
+        }
+
+        /**
+         * Schedules links of a downloaded page with the given remaining depth of the page.
+         */
+        private void extract(String url, Document document, int depth) {
+            if (document == null || stopped) {
+                finish(depth);
+                return;
             }
-            for (Future<List<String>> extractedLinks : extractionQueue) {
+            extractExecutor.execute(() -> {
+                long start = System.nanoTime();
                 try {
-                    List<String> links = extractedLinks.get();
-                    for (String link : links) {
-                        if (!visitedUrls.contains(link)) {
-                            urlQueue.add(link);
-                            visitedUrls.add(link);
-                        }
+                    for (String link : document.extractLinks()) {
+                        schedule(link, depth - 1);
                     }
-                } catch (InterruptedException | ExecutionException e) {
-                    e.printStackTrace();
+                } catch (IOException e) {
+                    System.err.println("Cannot extract links from " + url + ": " + e.getMessage());
+                } finally {
+                    metrics.extracted(System.nanoTime() - start);
+                    finish(depth);
+                }
+            });
+        }
+
+        private Document download(String url) throws IOException {
+            Thread current = Thread.currentThread();
+            synchronized (downloading) {
+                if (stopped) {
+                    throw new InterruptedIOException("Crawl is stopped");
                 }
+                downloading.add(current);
+            }
+            long start = System.nanoTime();
+            boolean ok = false;
+            try {
+                Document document = downloader.download(url);
+                ok = true;
+                return document;
+            } finally {
+                metrics.downloaded(System.nanoTime() - start, ok);
+                synchronized (downloading) {
+                    downloading.remove(current);
+                }
+                // Interrupt of a stopped session must not leak into the next task of this thread
+                Thread.interrupted();
             }
-            extractionQueue.clear();
-            ++currentDepth;
         }
 
-        downloadExecutor.shutdown();
-        extractExecutor.shutdown();
-        try {
-            downloadExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-            extractExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+        private void emit(Page page) {
+            if (stopped) {
+                return;
+            }
+            boolean exhausted = false;
+            if (page.downloaded()) {
+                int count = pages.incrementAndGet();
+                long size = budget.sizeOf() == null || page.document() == null ? 0
+                        : budget.sizeOf().applyAsLong(page.document());
+                long before = bytes.getAndAdd(size);
+                if (count > budget.maxPages() || before >= budget.maxBytes()) {
+                    stop();
+                    return;
+                }
+                exhausted = count == budget.maxPages() || before + size >= budget.maxBytes();
+            }
+            if (!sink.test(page) || exhausted) {
+                stop();
+            }
+        }
+
+        void stop() {
+            stopped = true;
+            end.complete(null);
+            synchronized (downloading) {
+                for (Thread thread : downloading) {
+                    thread.interrupt();
+                }
+            }
+            dropQueued();
+        }
+
+        /**
+         * Drops downloads of this session waiting in the scheduler.
+         * Dropped downloads are run here: they return at once as the session is stopped, but still finish their tasks.
+         */
+        private void dropQueued() {
+            for (Runnable task : scheduler.cancel(this)) {
+                task.run();
+            }
+        }
+
+        /**
+         * Completes download of the URL first visited with the given depth.
+         * The entry stays in {@link #documents} while the URL may still be reached with a greater depth.
+         */
+        private void complete(String url, int depth, CompletableFuture<Document> fetch, Document document) {
+            finished.get(depth).add(url);
+            fetch.complete(document);
+            if (depth + 2 >= finishedDepth) {
+                forget(depth);
+            }
+        }
+
+        /**
+         * Drops finished downloads of the given depth, no URL can be reached with a greater depth
+         * as all tasks with depth above {@code depth + 1} are finished.
+         */
+        private void forget(int depth) {
+            Queue<String> urls = finished.get(depth);
+            for (String url = urls.poll(); url != null; url = urls.poll()) {
+                documents.remove(url);
+            }
+        }
+
+        private void started(int depth) {
+            inFlight.incrementAndGet();
+            depthTasks.incrementAndGet(depth);
+        }
+
+        private void finish(int depth) {
+            if (depthTasks.decrementAndGet(depth) == 0 && depth + 1 == finishedDepth) {
+                advance();
+            }
+            finish();
+        }
+
+        private synchronized void advance() {
+            int depth = finishedDepth;
+            while (depth > 1 && depthTasks.get(depth - 1) == 0) {
+                depth--;
+            }
+            finishedDepth = depth;
+            for (int level = Math.max(depth - 2, 1); level < finished.size(); level++) {
+                forget(level);
+            }
+        }
+
+        void finish() {
+            if (inFlight.decrementAndGet() == 0) {
+                sessions.remove(this);
+                completion.complete(null);
+                end.complete(null);
+            }
+        }
+
+        /**
+         * Waits until the session ends, stops it on timeout or interrupt.
+         *
+         * @param timeout maximal time to wait, {@code null} to wait for completion
+         */
+        void await(Duration timeout) {
+            try {
+                if (timeout == null) {
+                    end.get();
+                } else {
+                    end.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+                }
+            } catch (TimeoutException e) {
+                stop();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop();
+            } catch (ExecutionException e) {
+                throw new AssertionError("Session never completes exceptionally", e);
+            }
         }
+    }
 
-        return new Result(new ArrayList<>(downloadedPages), failedDownloads);
+    /**
+     * Returns live statistics of this crawler.
+     *
+     * @return statistics view
+     * @see #registerMetrics()
+     */
+    public CrawlerMetricsMBean metrics() {
+        return metrics;
     }
 
+    /**
+     * Registers {@link #metrics() statistics} in the platform MBean server until the crawler is closed.
+     * If registration fails, the error is printed to {@code System.err} and the crawler works without it.
+     */
+    public void registerMetrics() {
+        metrics.register();
+    }
+
+    /**
+     * Lets running sessions finish, then shuts the executors down.
+     * This is the only point where the crawler releases its threads; {@link #download} fails afterwards.
+     */
     @Override
     public void close() {
+        closed = true;
+        for (Session session : sessions) {
+            session.completion.join();
+        }
         downloadExecutor.shutdown();
         extractExecutor.shutdown();
+        try {
+            downloadExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            extractExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        scheduler.close();
+        metrics.unregister();
     }
 
     public static void main(String[] args) {
@@ -120,4 +572,4 @@ public class WebCrawler implements NewCrawler {
             System.err.println("IO Exception: " + e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
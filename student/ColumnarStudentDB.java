@@ -0,0 +1,268 @@
+package info.kgeorgiy.ja.kupriyanov.student;
+
+import info.kgeorgiy.java.advanced.student.GroupName;
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.util.*;
+import java.util.function.IntPredicate;
+
+/**
+ * Immutable columnar snapshot of a roster answering the {@link StudentDB} queries.
+ *
+ * <p>Students are stored as parallel primitive columns: ids in an {@code int[]}, first and last names as codes
+ * into one dictionary of distinct names, groups as {@link GroupName} ordinals. The dictionary is sorted,
+ * so codes compare as the names do and orderings are computed on {@code int}s only.
+ * Queries scan the columns and create {@link Student} objects only for the students they return;
+ * names of those objects are shared dictionary strings.
+ * A student takes 13 bytes of columns instead of an object with its own strings.
+ */
+public class ColumnarStudentDB {
+    private static final GroupName[] GROUPS = GroupName.values();
+    private static final byte NO_GROUP = -1;
+
+    private final String[] names;
+    private final int[] ids;
+    private final int[] firstNames;
+    private final int[] lastNames;
+    private final byte[] groups;
+
+    public ColumnarStudentDB(Collection<Student> students) {
+        Map<String, Integer> codes = new HashMap<>();
+        for (Student student : students) {
+            codes.put(student.getFirstName(), 0);
+            codes.put(student.getLastName(), 0);
+        }
+        names = codes.keySet().toArray(new String[0]);
+        Arrays.sort(names);
+        for (int i = 0; i < names.length; i++) {
+            codes.put(names[i], i);
+        }
+        int size = students.size();
+        ids = new int[size];
+        firstNames = new int[size];
+        lastNames = new int[size];
+        groups = new byte[size];
+        int i = 0;
+        for (Student student : students) {
+            ids[i] = student.getId();
+            firstNames[i] = codes.get(student.getFirstName());
+            lastNames[i] = codes.get(student.getLastName());
+            groups[i] = student.getGroup() == null ? NO_GROUP : (byte) student.getGroup().ordinal();
+            i++;
+        }
+    }
+
+    public int size() {
+        return ids.length;
+    }
+
+    public List<String> getFirstNames() {
+        return decode(firstNames);
+    }
+
+    public List<String> getLastNames() {
+        return decode(lastNames);
+    }
+
+    public List<GroupName> getGroups() {
+        List<GroupName> result = new ArrayList<>(groups.length);
+        for (byte group : groups) {
+            if (group != NO_GROUP) {
+                result.add(GROUPS[group]);
+            }
+        }
+        return result;
+    }
+
+    public List<String> getFullNames() {
+        List<String> result = new ArrayList<>(ids.length);
+        for (int i = 0; i < ids.length; i++) {
+            result.add(names[firstNames[i]] + " " + names[lastNames[i]]);
+        }
+        return result;
+    }
+
+    /**
+     * Returns distinct first names in ascending order, read off the sorted dictionary.
+     */
+    public Set<String> getDistinctFirstNames() {
+        boolean[] used = new boolean[names.length];
+        for (int code : firstNames) {
+            used[code] = true;
+        }
+        Set<String> result = new LinkedHashSet<>();
+        for (int code = 0; code < names.length; code++) {
+            if (used[code]) {
+                result.add(names[code]);
+            }
+        }
+        return result;
+    }
+
+    public String getMaxStudentFirstName() {
+        int best = -1;
+        for (int i = 0; i < ids.length; i++) {
+            if (best < 0 || ids[i] > ids[best]) {
+                best = i;
+            }
+        }
+        return best < 0 ? "" : names[firstNames[best]];
+    }
+
+    public String getMinStudentFirstName() {
+        int best = -1;
+        for (int i = 0; i < ids.length; i++) {
+            if (best < 0 || ids[i] < ids[best]) {
+                best = i;
+            }
+        }
+        return best < 0 ? "" : names[firstNames[best]];
+    }
+
+    public List<Student> sortStudentsById() {
+        // id in the high half, row in the low one: a primitive sort that keeps rows with equal ids in order
+        long[] keys = new long[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            keys[i] = (long) ids[i] << 32 | i;
+        }
+        Arrays.sort(keys);
+        List<Student> result = new ArrayList<>(keys.length);
+        for (long key : keys) {
+            result.add(student((int) key));
+        }
+        return result;
+    }
+
+    public List<Student> sortStudentsByName() {
+        return materialize(sortRows(allRows(), (a, b) -> {
+            int result = compareNames(a, b);
+            return result != 0 ? result : Integer.compare(ids[b], ids[a]);
+        }));
+    }
+
+    public List<Student> findStudentsByFirstName(String name) {
+        return find(firstNames, code(name));
+    }
+
+    public List<Student> findStudentsByLastName(String name) {
+        return find(lastNames, code(name));
+    }
+
+    public List<Student> findStudentsByGroup(GroupName group) {
+        byte ordinal = group == null ? NO_GROUP : (byte) group.ordinal();
+        return sortedByName(rows(row -> groups[row] == ordinal));
+    }
+
+    public Map<String, String> findStudentNamesByGroup(GroupName group) {
+        Map<String, String> result = new HashMap<>();
+        byte ordinal = group == null ? NO_GROUP : (byte) group.ordinal();
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i] == ordinal) {
+                result.merge(names[lastNames[i]], names[firstNames[i]], (a, b) -> a.compareTo(b) < 0 ? a : b);
+            }
+        }
+        return result;
+    }
+
+    private int code(String name) {
+        int code = Arrays.binarySearch(names, name);
+        return code < 0 ? -1 : code;
+    }
+
+    private List<Student> find(int[] column, int code) {
+        return code < 0 ? new ArrayList<>() : sortedByName(rows(row -> column[row] == code));
+    }
+
+    /**
+     * Returns matching rows. Matches are counted first, so only an array of their size is allocated.
+     */
+    private int[] rows(IntPredicate matches) {
+        int count = 0;
+        for (int row = 0; row < ids.length; row++) {
+            if (matches.test(row)) {
+                count++;
+            }
+        }
+        int[] rows = new int[count];
+        for (int row = 0, i = 0; i < count; row++) {
+            if (matches.test(row)) {
+                rows[i++] = row;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Sorts rows as {@link StudentDB#STUDENT_COMPARATOR} does.
+     */
+    private List<Student> sortedByName(int[] rows) {
+        return materialize(sortRows(rows, (a, b) -> {
+            int result = compareNames(a, b);
+            return result != 0 ? result : Integer.compare(ids[a], ids[b]);
+        }));
+    }
+
+    private int compareNames(int a, int b) {
+        int result = Integer.compare(lastNames[a], lastNames[b]);
+        return result != 0 ? result : Integer.compare(firstNames[a], firstNames[b]);
+    }
+
+    private int[] allRows() {
+        int[] rows = new int[ids.length];
+        for (int i = 0; i < rows.length; i++) {
+            rows[i] = i;
+        }
+        return rows;
+    }
+
+    private List<String> decode(int[] column) {
+        List<String> result = new ArrayList<>(column.length);
+        for (int code : column) {
+            result.add(names[code]);
+        }
+        return result;
+    }
+
+    private Student student(int row) {
+        return new Student(ids[row], names[firstNames[row]], names[lastNames[row]],
+                groups[row] == NO_GROUP ? null : GROUPS[groups[row]]);
+    }
+
+    private List<Student> materialize(int[] rows) {
+        List<Student> result = new ArrayList<>(rows.length);
+        for (int row : rows) {
+            result.add(student(row));
+        }
+        return result;
+    }
+
+    private interface RowComparator {
+        int compare(int a, int b);
+    }
+
+    /**
+     * Stable merge sort of row numbers without boxing them.
+     */
+    private static int[] sortRows(int[] rows, RowComparator comparator) {
+        int[] buffer = new int[rows.length];
+        for (int width = 1; width < rows.length; width *= 2) {
+            for (int from = 0; from < rows.length; from += 2 * width) {
+                int middle = Math.min(from + width, rows.length);
+                int to = Math.min(from + 2 * width, rows.length);
+                int left = from;
+                int right = middle;
+                for (int i = from; i < to; i++) {
+                    if (right >= to || left < middle && comparator.compare(rows[left], rows[right]) <= 0) {
+                        buffer[i] = rows[left++];
+                    } else {
+                        buffer[i] = rows[right++];
+                    }
+                }
+            }
+            int[] swap = rows;
+            rows = buffer;
+            buffer = swap;
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,201 @@
+package info.kgeorgiy.ja.kupriyanov.student;
+
+import info.kgeorgiy.java.advanced.student.GroupName;
+import info.kgeorgiy.java.advanced.student.Student;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
+
+/**
+ * Stateful counterpart of {@link StudentDB}: students are ingested once and kept in hash indexes
+ * by first name, last name and group, every index entry sorted by {@link StudentDB#STUDENT_COMPARATOR}
+ * and then by group.
+ * Indexes are updated on every {@link #add} and {@link #remove} in {@code O(log n)},
+ * queries take {@code O(result)} and return the same lists as the corresponding {@link StudentDB} methods
+ * applied to the stored students, except for ties that {@link StudentDB} leaves in input order:
+ * students with equal ids come by name and then group, and students differing only by group come in group order.
+ *
+ * <p>A student is identified by names, id and group: students equal in all of them are stored once.
+ * Queries may run concurrently with each other; updates are exclusive.
+ */
+public final class IndexedStudentDB {
+    private static final Comparator<Student> KEY_COMPARATOR = StudentDB.STUDENT_COMPARATOR
+            .thenComparing(Student::getGroup, Comparator.nullsFirst(Comparator.naturalOrder()));
+    private static final Comparator<Student> ID_COMPARATOR = Comparator
+            .comparingInt(Student::getId)
+            .thenComparing(KEY_COMPARATOR);
+
+    private final NavigableSet<Student> byName = new TreeSet<>(KEY_COMPARATOR);
+    private final NavigableSet<Student> byId = new TreeSet<>(ID_COMPARATOR);
+    private final Map<String, NavigableSet<Student>> byFirstName = new HashMap<>();
+    private final Map<String, NavigableSet<Student>> byLastName = new HashMap<>();
+    private final Map<GroupName, NavigableSet<Student>> byGroup = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public IndexedStudentDB() {
+    }
+
+    public IndexedStudentDB(Collection<Student> students) {
+        addAll(students);
+    }
+
+    /**
+     * Adds student to all indexes.
+     *
+     * @param student student to add
+     * @return {@code false} if a student with the same names, id and group is already present
+     */
+    public boolean add(Student student) {
+        lock.writeLock().lock();
+        try {
+            if (!byName.add(student)) {
+                return false;
+            }
+            byId.add(student);
+            index(byFirstName, student.getFirstName()).add(student);
+            index(byLastName, student.getLastName()).add(student);
+            index(byGroup, student.getGroup()).add(student);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void addAll(Collection<Student> students) {
+        lock.writeLock().lock();
+        try {
+            for (Student student : students) {
+                add(student);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes student with the same names, id and group as the given one from all indexes.
+     *
+     * @param student student to remove
+     * @return {@code false} if there is no such student
+     */
+    public boolean remove(Student student) {
+        lock.writeLock().lock();
+        try {
+            Student stored = byName.floor(student);
+            if (stored == null || KEY_COMPARATOR.compare(stored, student) != 0) {
+                return false;
+            }
+            byName.remove(stored);
+            byId.remove(stored);
+            unindex(byFirstName, stored.getFirstName(), stored);
+            unindex(byLastName, stored.getLastName(), stored);
+            unindex(byGroup, stored.getGroup(), stored);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byName.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public List<Student> findStudentsByFirstName(String name) {
+        return find(byFirstName, name);
+    }
+
+    public List<Student> findStudentsByLastName(String name) {
+        return find(byLastName, name);
+    }
+
+    public List<Student> findStudentsByGroup(GroupName group) {
+        return find(byGroup, group);
+    }
+
+    /**
+     * Returns last names of students of the group mapped to the least first name among namesakes,
+     * as {@link StudentDB#findStudentNamesByGroup}.
+     */
+    public Map<String, String> findStudentNamesByGroup(GroupName group) {
+        Map<String, String> names = new HashMap<>();
+        for (Student student : findStudentsByGroup(group)) {
+            names.merge(student.getLastName(), student.getFirstName(), (a, b) -> a.compareTo(b) < 0 ? a : b);
+        }
+        return names;
+    }
+
+    /**
+     * Returns students ordered by id, students with equal ids ordered by {@link StudentDB#STUDENT_COMPARATOR}
+     * and then by group. {@link StudentDB#sortStudentsById} keeps such students in input order,
+     * which the indexes do not store.
+     */
+    public List<Student> sortStudentsById() {
+        lock.readLock().lock();
+        try {
+            return new ArrayList<>(byId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Returns students ordered as by {@link StudentDB#sortStudentsByName}: the index order
+     * with every run of namesakes reversed, so ids descend within it.
+     * Runs of students differing only by group are reversed back into group order.
+     */
+    public List<Student> sortStudentsByName() {
+        List<Student> students;
+        lock.readLock().lock();
+        try {
+            students = new ArrayList<>(byName);
+        } finally {
+            lock.readLock().unlock();
+        }
+        reverseRuns(students, IndexedStudentDB::sameName);
+        reverseRuns(students, (a, b) -> a.getId() == b.getId() && sameName(a, b));
+        return students;
+    }
+
+    private static void reverseRuns(List<Student> students, BiPredicate<Student, Student> same) {
+        int from = 0;
+        for (int i = 1; i <= students.size(); i++) {
+            if (i == students.size() || !same.test(students.get(from), students.get(i))) {
+                Collections.reverse(students.subList(from, i));
+                from = i;
+            }
+        }
+    }
+
+    private static boolean sameName(Student a, Student b) {
+        return a.getLastName().equals(b.getLastName()) && a.getFirstName().equals(b.getFirstName());
+    }
+
+    private <K> List<Student> find(Map<K, NavigableSet<Student>> index, K key) {
+        lock.readLock().lock();
+        try {
+            NavigableSet<Student> students = index.get(key);
+            return students == null ? new ArrayList<>() : new ArrayList<>(students);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static <K> NavigableSet<Student> index(Map<K, NavigableSet<Student>> index, K key) {
+        return index.computeIfAbsent(key, k -> new TreeSet<>(KEY_COMPARATOR));
+    }
+
+    private static <K> void unindex(Map<K, NavigableSet<Student>> index, K key, Student student) {
+        NavigableSet<Student> students = index.get(key);
+        students.remove(student);
+        if (students.isEmpty()) {
+            index.remove(key);
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package info.kgeorgiy.ja.kupriyanov.student;
+
+import info.kgeorgiy.java.advanced.student.GroupName;
+import info.kgeorgiy.java.advanced.student.Student;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+public class IndexedStudentDBTest {
+    private static final String[] FIRST_NAMES = {"Ivan", "Petr", "Anna", "Olga"};
+    private static final String[] LAST_NAMES = {"Ivanov", "Petrov", "Sidorova"};
+    /**
+     * Input order in which {@link StudentDB} breaks ties the way the indexes do.
+     */
+    private static final Comparator<Student> INPUT_ORDER = Comparator.comparingInt(Student::getId)
+            .thenComparing(StudentDB.STUDENT_COMPARATOR)
+            .thenComparing(Student::getGroup);
+
+    private final StudentDB db = new StudentDB();
+    private final Random random = new Random(2378);
+    private IndexedStudentDB indexed;
+    private List<Student> students;
+
+    @Before
+    public void setUp() {
+        indexed = new IndexedStudentDB();
+        students = new ArrayList<>();
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        for (int i = 0; i < 300; i++) {
+            Student student = randomStudent();
+            Student stored = find(student);
+            if (random.nextInt(3) == 0 && !students.isEmpty()) {
+                Student removed = students.get(random.nextInt(students.size()));
+                Assert.assertTrue(indexed.remove(copy(removed)));
+                students.remove(removed);
+            } else {
+                Assert.assertEquals(stored == null, indexed.add(student));
+                if (stored == null) {
+                    students.add(student);
+                }
+            }
+            checkIndexes();
+        }
+    }
+
+    @Test
+    public void testRemoveAll() {
+        for (int i = 0; i < 50; i++) {
+            Student student = randomStudent();
+            if (indexed.add(student)) {
+                students.add(student);
+            }
+        }
+        for (Student student : new ArrayList<>(students)) {
+            Assert.assertTrue(indexed.remove(copy(student)));
+            Assert.assertFalse(indexed.remove(copy(student)));
+            students.remove(student);
+            checkIndexes();
+        }
+        Assert.assertEquals(0, indexed.size());
+        for (GroupName group : GroupName.values()) {
+            Assert.assertTrue(indexed.findStudentsByGroup(group).isEmpty());
+        }
+    }
+
+    @Test
+    public void testSameNamesAndId() {
+        Student first = new Student(1, "Ivan", "Ivanov", GroupName.values()[1]);
+        Student second = new Student(1, "Ivan", "Ivanov", GroupName.values()[0]);
+        Assert.assertTrue(indexed.add(first));
+        Assert.assertTrue(indexed.add(second));
+        Assert.assertFalse(indexed.add(copy(first)));
+        Assert.assertEquals(List.of(second, first), indexed.sortStudentsById());
+        Assert.assertEquals(List.of(second, first), indexed.sortStudentsByName());
+        Assert.assertTrue(indexed.remove(copy(second)));
+        Assert.assertEquals(List.of(first), indexed.findStudentsByFirstName("Ivan"));
+    }
+
+    private void checkIndexes() {
+        List<Student> input = new ArrayList<>(students);
+        input.sort(INPUT_ORDER);
+        Assert.assertEquals(input.size(), indexed.size());
+        Assert.assertEquals(db.sortStudentsById(input), indexed.sortStudentsById());
+        Assert.assertEquals(db.sortStudentsByName(input), indexed.sortStudentsByName());
+        for (String name : FIRST_NAMES) {
+            Assert.assertEquals(db.findStudentsByFirstName(input, name), indexed.findStudentsByFirstName(name));
+        }
+        for (String name : LAST_NAMES) {
+            Assert.assertEquals(db.findStudentsByLastName(input, name), indexed.findStudentsByLastName(name));
+        }
+        for (GroupName group : GroupName.values()) {
+            Assert.assertEquals(db.findStudentsByGroup(input, group), indexed.findStudentsByGroup(group));
+            Assert.assertEquals(db.findStudentNamesByGroup(input, group), indexed.findStudentNamesByGroup(group));
+        }
+    }
+
+    private Student randomStudent() {
+        GroupName[] groups = GroupName.values();
+        return new Student(random.nextInt(20), FIRST_NAMES[random.nextInt(FIRST_NAMES.length)],
+                LAST_NAMES[random.nextInt(LAST_NAMES.length)], groups[random.nextInt(Math.min(3, groups.length))]);
+    }
+
+    private Student find(Student student) {
+        for (Student stored : students) {
+            if (same(stored, student)) {
+                return stored;
+            }
+        }
+        return null;
+    }
+
+    private static boolean same(Student a, Student b) {
+        return a.getId() == b.getId() && a.getFirstName().equals(b.getFirstName())
+                && a.getLastName().equals(b.getLastName()) && a.getGroup() == b.getGroup();
+    }
+
+    private static Student copy(Student student) {
+        return new Student(student.getId(), student.getFirstName(), student.getLastName(), student.getGroup());
+    }
+}
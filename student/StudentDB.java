@@ -1,43 +1,72 @@
 package info.kgeorgiy.ja.kupriyanov.student;
+import info.kgeorgiy.java.advanced.student.AdvancedQuery;
+import info.kgeorgiy.java.advanced.student.Group;
 import info.kgeorgiy.java.advanced.student.GroupName;
 import info.kgeorgiy.java.advanced.student.Student;
-import info.kgeorgiy.java.advanced.student.StudentQuery;
 
 import java.util.*;
 import java.util.function.Function;
 import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
-public class StudentDB implements StudentQuery {
+public class StudentDB implements AdvancedQuery {
+    // Начиная с такого размера запросы выполняются параллельно
+    static final int PARALLEL_THRESHOLD = 1 << 15;
 
-    private final Comparator<Student> STUDENT_COMPARATOR = Comparator
+    static final Comparator<Student> STUDENT_COMPARATOR = Comparator
             .comparing(Student::getLastName)
             .thenComparing(Student::getFirstName)
-            .thenComparing(Student::getId);
+            .thenComparingInt(Student::getId);
 
-    private  final Comparator<Student> STUDENT_COMPARATOR_REVERSED_ID = Comparator
+    static final Comparator<Student> STUDENT_COMPARATOR_REVERSED_ID = Comparator
             .comparing(Student::getLastName)
             .thenComparing(Student::getFirstName)
-            .thenComparing(Student::getId, Comparator.reverseOrder());
+            .thenComparing(Comparator.comparingInt(Student::getId).reversed());
+
+    private static final Comparator<Student> ID_COMPARATOR = Comparator.comparingInt(Student::getId);
+
+    private static <T> Stream<T> stream(Collection<T> items) {
+        return items.size() < PARALLEL_THRESHOLD ? items.stream() : items.parallelStream();
+    }
+
+    private static List<Student> sorted(Student[] students, Comparator<Student> comparator) {
+        if (students.length < PARALLEL_THRESHOLD) {
+            Arrays.sort(students, comparator);
+        } else {
+            Arrays.parallelSort(students, comparator);
+        }
+        return new ArrayList<>(Arrays.asList(students));
+    }
 
     private List<String> mapStudentsToList(List<Student> students, Function<Student, String> mapper) {
-        return students.stream()
-                .map(mapper)
-                .collect(Collectors.toList());
+        if (students.size() >= PARALLEL_THRESHOLD) {
+            return students.parallelStream()
+                    .map(mapper)
+                    .collect(Collectors.toList());
+        }
+        List<String> result = new ArrayList<>(students.size());
+        for (Student student : students) {
+            result.add(mapper.apply(student));
+        }
+        return result;
     }
 
+    // Фильтрация за один проход, сортируются только подходящие студенты
     private List<Student> sortStudents(Collection<Student> students, Predicate<Student> predicate) {
-        return students.stream()
-                .filter(predicate) //up: исправил
-                // 1000000
-                .sorted(STUDENT_COMPARATOR)
-                // 1
-                // 1000000
-                .sorted(STUDENT_COMPARATOR)
-                // 1
-                .filter(predicate)
-
-                .collect(Collectors.toList());
+        if (students.size() >= PARALLEL_THRESHOLD) {
+            return sorted(students.parallelStream().filter(predicate).toArray(Student[]::new), STUDENT_COMPARATOR);
+        }
+        List<Student> result = new ArrayList<>();
+        for (Student student : students) {
+            if (predicate.test(student)) {
+                result.add(student);
+            }
+        }
+        result.sort(STUDENT_COMPARATOR);
+        return result;
     }
 
     public List<String> getFirstNames(List<Student> students) {
@@ -51,45 +80,50 @@ public class StudentDB implements StudentQuery {
         if (students == null) {
             return Collections.emptyList();
         }
-        return students.stream()
+        return stream(students)
                 .map(Student::getGroup)
                 .filter(Objects::nonNull)
                 .collect(Collectors.toList());
     }
 
     public List<String> getFullNames(List<Student> students) {
-        return mapStudentsToList(students, student -> student.getFirstName() + " " + student.getLastName());
+        return mapStudentsToList(students, StudentDB::getFullName);
+    }
+
+    private static String getFullName(Student student) {
+        return student.getFirstName() + " " + student.getLastName();
     }
 
+    // Вместо вставок в TreeSet: уникальные имена сортируются один раз, порядок сохраняет LinkedHashSet
     public Set<String> getDistinctFirstNames(List<Student> students) {
-        return students.stream()
+        String[] names = stream(students)
                 .map(Student::getFirstName)
-                .collect(Collectors.toCollection(TreeSet::new));
+                .collect(Collectors.toSet())
+                .toArray(new String[0]);
+        Arrays.sort(names);
+        Set<String> result = new LinkedHashSet<>(names.length * 4 / 3 + 1);
+        Collections.addAll(result, names);
+        return result;
     }
 
     public String getMaxStudentFirstName(List<Student> students) {
-        return students.stream()
-                .max(Comparator.comparing(Student::getId))
+        return stream(students)
+                .max(ID_COMPARATOR)
                 .map(Student::getFirstName)
                 .orElse("");
     }
     public String getMinStudentFirstName(List<Student> students) {
-        return students.stream()
-                .min(Comparator.comparing(Student::getId))
+        return stream(students)
+                .min(ID_COMPARATOR)
                 .map(Student::getFirstName)
                 .orElse("");
     }
 
     public List<Student> sortStudentsById(Collection<Student> students) {
-        return students.stream()
-                .sorted(Comparator.comparing(Student::getId))
-                .collect(Collectors.toList());
+        return sorted(students.toArray(new Student[0]), ID_COMPARATOR);
     }
     public List<Student> sortStudentsByName(Collection<Student> students) {
-        return students.stream()
-                .sorted(STUDENT_COMPARATOR_REVERSED_ID) //исправил компоратор на каждый вызов
-                // Comparator на каждый вызов
-                .collect(Collectors.toList());
+        return sorted(students.toArray(new Student[0]), STUDENT_COMPARATOR_REVERSED_ID); //исправил компоратор на каждый вызов
     }
 
 
@@ -112,10 +146,101 @@ public class StudentDB implements StudentQuery {
     // Stream api
 
     public Map<String, String> findStudentNamesByGroup(Collection<Student> students, GroupName group) {
-        return students.stream()
+        return stream(students)
                 .filter(student -> student.getGroup().equals(group))
                 .collect(Collectors.toMap(Student::getLastName, Student::getFirstName, (a, b) -> a.compareTo(b) < 0 ? a : b));
     }
 
+    // Аналитика по группам: каждый запрос - один проход groupingBy. В параллельном потоке
+    // у каждого потока своя карта без блокировок, карты сливаются в порядке следования,
+    // поэтому студенты внутри группы остаются в исходном порядке
+
+    private static <K, V> Map<K, V> groupBy(Collection<Student> students, Function<Student, K> key,
+                                           Collector<Student, ?, V> downstream) {
+        return stream(students).collect(Collectors.groupingBy(key, downstream));
+    }
+
+    private List<Group> getSortedGroups(Collection<Student> students, Comparator<Student> order) {
+        return groupBy(students, Student::getGroup, Collectors.toList()).entrySet().stream()
+                .map(entry -> new Group(entry.getKey(), sorted(entry.getValue().toArray(new Student[0]), order)))
+                .sorted(Comparator.comparing(Group::getName))
+                .collect(Collectors.toList());
+    }
+
+    // Группы по возрастанию названия, студенты в группе по имени
+    @Override
+    public List<Group> getGroupsByName(Collection<Student> students) {
+        return getSortedGroups(students, STUDENT_COMPARATOR);
+    }
+
+    // Группы по возрастанию названия, студенты в группе по id
+    @Override
+    public List<Group> getGroupsById(Collection<Student> students) {
+        return getSortedGroups(students, ID_COMPARATOR);
+    }
+
+    // Самая большая группа, при равенстве - с наибольшим названием
+    @Override
+    public GroupName getLargestGroup(Collection<Student> students) {
+        return largest(groupBy(students, Student::getGroup, Collectors.counting()), Long::intValue, true);
+    }
+
+    // Группа с наибольшим числом различных имён, при равенстве - с наименьшим названием
+    @Override
+    public GroupName getLargestGroupFirstName(Collection<Student> students) {
+        return largest(groupBy(students, Student::getGroup, Collectors.mapping(Student::getFirstName, Collectors.toSet())),
+                Set::size, false);
+    }
+
+    // Имя, встречающееся в наибольшем числе групп, при равенстве - наибольшее
+    @Override
+    public String getMostPopularName(Collection<Student> students) {
+        String name = largest(groupBy(students, Student::getFirstName, Collectors.mapping(Student::getGroup, Collectors.toSet())),
+                Set::size, true);
+        return name == null ? "" : name;
+    }
+
+    @Override
+    public List<String> getFirstNames(Collection<Student> students, int[] indices) {
+        return byIndices(students, indices, Student::getFirstName);
+    }
+
+    @Override
+    public List<String> getLastNames(Collection<Student> students, int[] indices) {
+        return byIndices(students, indices, Student::getLastName);
+    }
+
+    @Override
+    public List<GroupName> getGroups(Collection<Student> students, int[] indices) {
+        return byIndices(students, indices, Student::getGroup);
+    }
+
+    @Override
+    public List<String> getFullNames(Collection<Student> students, int[] indices) {
+        return byIndices(students, indices, StudentDB::getFullName);
+    }
+
+    // Коллекция без произвольного доступа копируется один раз, дальше студенты берутся по индексам
+    private static <T> List<T> byIndices(Collection<Student> students, int[] indices, Function<Student, T> mapper) {
+        List<Student> list = students instanceof List<Student> random && random instanceof RandomAccess
+                ? random
+                : new ArrayList<>(students);
+        List<T> result = new ArrayList<>(indices.length);
+        for (int index : indices) {
+            result.add(mapper.apply(list.get(index)));
+        }
+        return result;
+    }
+
+    private static <K extends Comparable<? super K>, V> K largest(Map<K, V> groups, ToIntFunction<V> size,
+                                                                 boolean greatestKey) {
+        Comparator<K> keys = greatestKey ? Comparator.naturalOrder() : Comparator.reverseOrder();
+        return groups.entrySet().stream()
+                .max(Comparator.<Map.Entry<K, V>>comparingInt(entry -> size.applyAsInt(entry.getValue()))
+                        .thenComparing(Map.Entry::getKey, keys))
+                .map(Map.Entry::getKey)
+                .orElse(null);
+    }
+
 
 }
\ No newline at end of file
@@ -0,0 +1,114 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Periodic checkpoints of a {@link Walk} run: offset of the next input line and length of the output
+ * written for all preceding lines. Before a checkpoint is saved the output is flushed and forced to the device;
+ * the checkpoint itself is written to a temporary file, forced and atomically moved into place.
+ * A checkpoint without a file does nothing.
+ */
+class Checkpoint {
+    private static final int MAGIC = 0x57434b31;
+
+    /**
+     * Saved position.
+     *
+     * @param input  byte offset of the next input line
+     * @param output byte length of the output
+     */
+    record State(long input, long output) {
+    }
+
+    private final Path file;
+    private final long intervalNanos;
+    private final HashWriter writer;
+    private final FileChannel output;
+    private long last = System.nanoTime();
+
+    /**
+     * Creates checkpoint.
+     *
+     * @param file            checkpoint file, {@code null} to disable checkpoints
+     * @param intervalSeconds minimal time between checkpoints
+     * @param writer          writer to flush before saving
+     * @param output          channel under the writer
+     */
+    Checkpoint(Path file, int intervalSeconds, HashWriter writer, FileChannel output) {
+        this.file = file;
+        this.intervalNanos = TimeUnit.SECONDS.toNanos(intervalSeconds);
+        this.writer = writer;
+        this.output = output;
+    }
+
+    /**
+     * Reads saved checkpoint.
+     *
+     * @param file checkpoint file
+     * @return saved state or {@code null} if there is no valid checkpoint
+     * @throws IOException if the file exists but cannot be read
+     */
+    static State load(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC) {
+                return null;
+            }
+            State state = new State(in.readLong(), in.readLong());
+            return state.input() < 0 || state.output() < 0 ? null : state;
+        } catch (NoSuchFileException | EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Saves checkpoint if the interval has passed since the previous one.
+     * All output for lines before {@code input} must already be passed to the writer.
+     *
+     * @param input byte offset of the next input line
+     * @throws IOException if output or checkpoint cannot be written
+     */
+    void reached(long input) throws IOException {
+        if (file != null && System.nanoTime() - last >= intervalNanos) {
+            save(input);
+        }
+    }
+
+    private void save(long input) throws IOException {
+        writer.flush();
+        output.force(false);
+        Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), file.getFileName().toString(), ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp.toFile());
+                 DataOutputStream data = new DataOutputStream(out)) {
+                data.writeInt(MAGIC);
+                data.writeLong(input);
+                data.writeLong(output.position());
+                data.flush();
+                out.getFD().sync();
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+        last = System.nanoTime();
+    }
+
+    /**
+     * Forces the whole output to the device and removes checkpoint after the run has completed.
+     *
+     * @throws IOException if output cannot be written or the checkpoint cannot be deleted
+     */
+    void complete() throws IOException {
+        if (file != null) {
+            writer.flush();
+            output.force(false);
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32C;
+
+/**
+ * CRC32C checksum, computed by JVM intrinsics over whole words where the CPU supports it.
+ */
+class Crc32cHasher implements FileHasher {
+    private final CRC32C crc = new CRC32C();
+
+    @Override
+    public int length() {
+        return Integer.BYTES;
+    }
+
+    @Override
+    public void update(ByteBuffer data) {
+        crc.update(data);
+    }
+
+    @Override
+    public void update(byte[] data, int offset, int length) {
+        crc.update(data, offset, length);
+    }
+
+    @Override
+    public void digest(byte[] out) {
+        int value = (int) crc.getValue();
+        crc.reset();
+        out[0] = (byte) (value >>> 24);
+        out[1] = (byte) (value >>> 16);
+        out[2] = (byte) (value >>> 8);
+        out[3] = (byte) value;
+    }
+}
@@ -0,0 +1,42 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental hash function used by {@link Walk}.
+ * Contents of a file are fed by {@link #update} in chunks of arbitrary size, then {@link #digest} is called.
+ * Instances are not thread-safe and are reused for subsequent files.
+ */
+public interface FileHasher {
+    /**
+     * Returns length of the digest.
+     *
+     * @return digest length in bytes
+     */
+    int length();
+
+    /**
+     * Feeds remaining bytes of the buffer to the hash. The buffer is fully consumed.
+     *
+     * @param data data to hash
+     */
+    void update(ByteBuffer data);
+
+    /**
+     * Feeds {@code length} bytes of the array starting from {@code offset} to the hash.
+     *
+     * @param data   data to hash
+     * @param offset first byte to hash
+     * @param length number of bytes to hash
+     */
+    default void update(byte[] data, int offset, int length) {
+        update(ByteBuffer.wrap(data, offset, length));
+    }
+
+    /**
+     * Writes the digest of all bytes fed since the last reset and resets the hasher.
+     *
+     * @param out array of at least {@link #length()} bytes, digest is written from its start
+     */
+    void digest(byte[] out);
+}
@@ -0,0 +1,44 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import java.util.function.Supplier;
+
+/**
+ * Hash functions available from the command line.
+ */
+enum HashAlgorithm {
+    JENKINS(JenkinsHasher::new),
+    XXHASH64(Xxh64Hasher::new),
+    CRC32C(Crc32cHasher::new),
+    SHA256(Sha256Hasher::new);
+
+    private final Supplier<FileHasher> factory;
+
+    HashAlgorithm(Supplier<FileHasher> factory) {
+        this.factory = factory;
+    }
+
+    /**
+     * Creates new hasher instance.
+     *
+     * @return hasher computing this algorithm
+     */
+    FileHasher create() {
+        return factory.get();
+    }
+
+    /**
+     * Parses algorithm name given on the command line.
+     *
+     * @param name {@code jenkins}, {@code xxhash64}, {@code crc32c} or {@code sha256}
+     * @return corresponding algorithm
+     * @throws IllegalArgumentException for unknown names
+     */
+    static HashAlgorithm of(String name) {
+        for (HashAlgorithm algorithm : values()) {
+            if (algorithm.name().equalsIgnoreCase(name)) {
+                return algorithm;
+            }
+        }
+        throw new IllegalArgumentException("unknown hash algorithm " + name);
+    }
+}
@@ -0,0 +1,215 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Persistent cache of file hashes keyed by path, size, modification time and file key (inode).
+ *
+ * <p>The cache file is an append-only log: a header followed by length-prefixed, checksummed records,
+ * a later record for the same path overrides earlier ones. A record torn by a crash is detected by its length
+ * or checksum and cut off, together with everything after it, on the next open. When the log holds more dead records than live ones it is compacted
+ * into a temporary file which atomically replaces the log, so a crash leaves either the old or the new log.
+ * The header names the hash algorithm, a log written with another algorithm is discarded.
+ */
+class HashCache implements Closeable {
+    private static final int MAGIC = 0x57484331;
+    private static final int VERSION = 2;
+    private static final int MIN_DEAD_TO_COMPACT = 1024;
+    private static final int MAX_RECORD = 1 << 17;
+
+    private record Entry(long size, long modified, String fileKey, byte[] hash) {
+    }
+
+    private final Path file;
+    private final String algorithm;
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private DataOutputStream log;
+    private FileOutputStream logFile;
+
+    private HashCache(Path file, String algorithm) {
+        this.file = file;
+        this.algorithm = algorithm;
+    }
+
+    /**
+     * Opens cache stored in {@code file}, creating it if needed.
+     *
+     * @param file      cache file
+     * @param algorithm name of the hash algorithm of cached hashes
+     * @param rebuild   if {@code true}, existing contents are discarded
+     * @return opened cache
+     * @throws IOException if the cache file cannot be read or created
+     */
+    static HashCache open(Path file, String algorithm, boolean rebuild) throws IOException {
+        HashCache cache = new HashCache(file, algorithm);
+        long records = 0;
+        long valid = 0;
+        if (!rebuild && Files.exists(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                if (in.readInt() == MAGIC && in.readInt() == VERSION && in.readUTF().equals(algorithm)) {
+                    valid = headerLength(algorithm);
+                    while (true) {
+                        int length = in.readInt();
+                        if (length <= 0 || length > MAX_RECORD) {
+                            break;
+                        }
+                        byte[] record = new byte[length];
+                        in.readFully(record);
+                        if (in.readInt() != checksum(record)) {
+                            break;
+                        }
+                        cache.readRecord(record);
+                        valid += 2 * Integer.BYTES + length;
+                        records++;
+                    }
+                }
+            } catch (EOFException | UTFDataFormatException ignored) {
+                // end of log, a record torn by a crash or a corrupted header
+            }
+        }
+        if (valid == 0) {
+            cache.rewrite(Map.of());
+        } else if (records - cache.entries.size() > Math.max(MIN_DEAD_TO_COMPACT, cache.entries.size())) {
+            cache.rewrite(cache.entries);
+        } else {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(valid);
+            }
+        }
+        cache.openLog();
+        return cache;
+    }
+
+    /**
+     * Returns cached hash if the file has not changed since it was stored.
+     *
+     * @param path       absolute normalized path
+     * @param attributes current attributes of the file
+     * @return cached hash, which must not be modified, or {@code null}
+     */
+    byte[] get(String path, BasicFileAttributes attributes) {
+        Entry entry = entries.get(path);
+        if (entry == null
+                || entry.size() != attributes.size()
+                || entry.modified() != modified(attributes)
+                || !entry.fileKey().equals(fileKey(attributes))) {
+            return null;
+        }
+        return entry.hash();
+    }
+
+    /**
+     * Stores hash of the file and appends it to the log.
+     *
+     * @param path       absolute normalized path
+     * @param attributes attributes of the file read before hashing
+     * @param hash       hash of the file, copied by the cache
+     * @throws IOException if the log cannot be written
+     */
+    void put(String path, BasicFileAttributes attributes, byte[] hash) throws IOException {
+        Entry entry = new Entry(attributes.size(), modified(attributes), fileKey(attributes), hash.clone());
+        entries.put(path, entry);
+        byte[] record = writeRecord(path, entry);
+        synchronized (this) {
+            log.writeInt(record.length);
+            log.write(record);
+            log.writeInt(checksum(record));
+        }
+    }
+
+    /**
+     * Flushes the log and forces it to the storage device.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            log.flush();
+            logFile.getFD().sync();
+        } finally {
+            log.close();
+        }
+    }
+
+    private void openLog() throws IOException {
+        logFile = new FileOutputStream(file.toFile(), true);
+        log = new DataOutputStream(new BufferedOutputStream(logFile, 1 << 16));
+    }
+
+    private void rewrite(Map<String, Entry> live) throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, file.getFileName().toString(), ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(temp.toFile());
+                 DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out, 1 << 16))) {
+                data.writeInt(MAGIC);
+                data.writeInt(VERSION);
+                data.writeUTF(algorithm);
+                for (Map.Entry<String, Entry> entry : live.entrySet()) {
+                    byte[] record = writeRecord(entry.getKey(), entry.getValue());
+                    data.writeInt(record.length);
+                    data.write(record);
+                    data.writeInt(checksum(record));
+                }
+                data.flush();
+                out.getFD().sync();
+            }
+            Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    private void readRecord(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        String path = in.readUTF();
+        long size = in.readLong();
+        long modified = in.readLong();
+        String fileKey = in.readUTF();
+        byte[] hash = new byte[in.readUnsignedByte()];
+        in.readFully(hash);
+        entries.put(path, new Entry(size, modified, fileKey, hash));
+    }
+
+    private static byte[] writeRecord(String path, Entry entry) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(path.length() + 64);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeUTF(path);
+        out.writeLong(entry.size());
+        out.writeLong(entry.modified());
+        out.writeUTF(entry.fileKey());
+        out.writeByte(entry.hash().length);
+        out.write(entry.hash());
+        return bytes.toByteArray();
+    }
+
+    private static long headerLength(String algorithm) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        new DataOutputStream(bytes).writeUTF(algorithm);
+        return 2 * Integer.BYTES + bytes.size();
+    }
+
+    private static int checksum(byte[] record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record);
+        return (int) crc.getValue();
+    }
+
+    private static long modified(BasicFileAttributes attributes) {
+        return attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS);
+    }
+
+    private static String fileKey(BasicFileAttributes attributes) {
+        return Objects.toString(attributes.fileKey(), "");
+    }
+}
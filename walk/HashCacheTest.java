@@ -0,0 +1,166 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class HashCacheTest {
+    private static final String ALGORITHM = "xxhash64";
+
+    private Path directory;
+    private Path cacheFile;
+    private final List<Path> files = new ArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("hash-cache-test");
+        cacheFile = directory.resolve("cache");
+        for (int i = 0; i < 3; i++) {
+            files.add(Files.writeString(directory.resolve("file" + i), "contents " + i));
+        }
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
+    }
+
+    @Test
+    public void testReopen() throws IOException {
+        putAll(3);
+        try (HashCache cache = open()) {
+            assertCached(cache, 3);
+        }
+    }
+
+    @Test
+    public void testChangedFile() throws IOException {
+        putAll(1);
+        Files.writeString(files.get(0), "changed contents");
+        try (HashCache cache = open()) {
+            Assert.assertNull(cache.get(key(0), attributes(0)));
+        }
+    }
+
+    @Test
+    public void testTornRecord() throws IOException {
+        putAll(3);
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile.toFile(), "rw")) {
+            file.setLength(file.length() - 3);
+        }
+        try (HashCache cache = open()) {
+            assertCached(cache, 2);
+            Assert.assertNull(cache.get(key(2), attributes(2)));
+            cache.put(key(2), attributes(2), hash(2));
+        }
+        try (HashCache cache = open()) {
+            assertCached(cache, 3);
+        }
+    }
+
+    @Test
+    public void testCorruptedRecord() throws IOException {
+        putAll(3);
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile.toFile(), "rw")) {
+            file.seek(file.length() - 6);
+            file.write(file.read() ^ 1);
+        }
+        try (HashCache cache = open()) {
+            assertCached(cache, 2);
+            Assert.assertNull(cache.get(key(2), attributes(2)));
+        }
+    }
+
+    @Test
+    public void testCorruptedHeader() throws IOException {
+        putAll(3);
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile.toFile(), "rw")) {
+            // first byte of the algorithm name, not valid modified UTF-8
+            file.seek(2 * Integer.BYTES + Short.BYTES);
+            file.write(0xFF);
+        }
+        reopenEmpty();
+    }
+
+    @Test
+    public void testTruncatedHeader() throws IOException {
+        putAll(3);
+        try (RandomAccessFile file = new RandomAccessFile(cacheFile.toFile(), "rw")) {
+            file.setLength(Integer.BYTES + 1);
+        }
+        reopenEmpty();
+    }
+
+    @Test
+    public void testOtherAlgorithm() throws IOException {
+        putAll(3);
+        try (HashCache cache = HashCache.open(cacheFile, "sha256", false)) {
+            Assert.assertNull(cache.get(key(0), attributes(0)));
+        }
+    }
+
+    @Test
+    public void testRebuild() throws IOException {
+        putAll(3);
+        try (HashCache cache = HashCache.open(cacheFile, ALGORITHM, true)) {
+            Assert.assertNull(cache.get(key(0), attributes(0)));
+        }
+    }
+
+    private void reopenEmpty() throws IOException {
+        try (HashCache cache = open()) {
+            for (int i = 0; i < files.size(); i++) {
+                Assert.assertNull(cache.get(key(i), attributes(i)));
+            }
+            cache.put(key(0), attributes(0), hash(0));
+        }
+        try (HashCache cache = open()) {
+            assertCached(cache, 1);
+        }
+    }
+
+    private void putAll(int count) throws IOException {
+        try (HashCache cache = open()) {
+            for (int i = 0; i < count; i++) {
+                cache.put(key(i), attributes(i), hash(i));
+            }
+        }
+    }
+
+    private void assertCached(HashCache cache, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            Assert.assertArrayEquals(hash(i), cache.get(key(i), attributes(i)));
+        }
+    }
+
+    private HashCache open() throws IOException {
+        return HashCache.open(cacheFile, ALGORITHM, false);
+    }
+
+    private String key(int index) {
+        return files.get(index).toAbsolutePath().normalize().toString();
+    }
+
+    private BasicFileAttributes attributes(int index) throws IOException {
+        return Files.readAttributes(files.get(index), BasicFileAttributes.class);
+    }
+
+    private static byte[] hash(int index) {
+        return new byte[]{1, 2, 3, 4, 5, 6, 7, (byte) index};
+    }
+}
@@ -0,0 +1,133 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes {@code <hex hash> <path>} lines without per-line allocations.
+ * Hex digits and paths are put into a reusable char buffer, which is encoded to UTF-8 in bulk
+ * into a byte buffer written to the channel in large blocks. All methods are synchronized.
+ */
+class HashWriter implements Closeable {
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int CHARS = 1 << 16;
+    private static final int BYTES = 1 << 18;
+
+    private final WritableByteChannel channel;
+    private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    private final CharBuffer chars = CharBuffer.allocate(CHARS);
+    private final ByteBuffer bytes = ByteBuffer.allocateDirect(BYTES);
+
+    /**
+     * Creates writer. The channel is closed by {@link #close()}.
+     *
+     * @param channel output channel
+     */
+    HashWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Writes line with hex digest and path.
+     *
+     * @param digest digest to write in hex
+     * @param path   path to write after the digest
+     * @throws IOException if output cannot be written
+     */
+    synchronized void write(byte[] digest, String path) throws IOException {
+        if (chars.remaining() < 2 * digest.length + 1) {
+            encode(false);
+        }
+        char[] array = chars.array();
+        int position = chars.position();
+        for (byte b : digest) {
+            array[position++] = HEX[(b >> 4) & 0xf];
+            array[position++] = HEX[b & 0xf];
+        }
+        array[position++] = ' ';
+        chars.position(position);
+        put(path);
+        put('\n');
+    }
+
+    private void put(String text) throws IOException {
+        int offset = 0;
+        while (offset < text.length()) {
+            if (!chars.hasRemaining()) {
+                encode(false);
+            }
+            int count = Math.min(chars.remaining(), text.length() - offset);
+            chars.put(text, offset, offset + count);
+            offset += count;
+        }
+    }
+
+    private void put(char c) throws IOException {
+        if (!chars.hasRemaining()) {
+            encode(false);
+        }
+        chars.put(c);
+    }
+
+    /**
+     * Encodes buffered chars. Bytes are written to the channel only when the byte buffer is full,
+     * a surrogate pair split by the end of the char buffer is kept for the next call.
+     */
+    private void encode(boolean endOfInput) throws IOException {
+        chars.flip();
+        while (true) {
+            CoderResult result = encoder.encode(chars, bytes, endOfInput);
+            if (result.isOverflow()) {
+                drain();
+            } else {
+                break;
+            }
+        }
+        chars.compact();
+    }
+
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining()) {
+            channel.write(bytes);
+        }
+        bytes.clear();
+    }
+
+    /**
+     * Writes all buffered lines to the channel.
+     *
+     * @throws IOException if output cannot be written
+     */
+    synchronized void flush() throws IOException {
+        encode(false);
+        drain();
+    }
+
+    /**
+     * Writes all buffered lines and closes the channel.
+     *
+     * @throws IOException if output cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            encode(true);
+            while (encoder.flush(bytes).isOverflow()) {
+                drain();
+            }
+            drain();
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads UTF-8 lines like {@link java.io.BufferedReader#readLine()} and tracks the byte offset in the file,
+ * so reading may be resumed from a checkpoint.
+ */
+class InputLines implements Closeable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).limit(0);
+    private byte[] line = new byte[256];
+    private long offset;
+
+    /**
+     * Creates reader starting at the given offset. The channel is closed by {@link #close()}.
+     *
+     * @param channel input channel
+     * @param start   byte offset of the first line to read
+     * @throws IOException if the channel cannot be positioned
+     */
+    InputLines(FileChannel channel, long start) throws IOException {
+        this.channel = channel;
+        channel.position(start);
+        offset = start;
+    }
+
+    /**
+     * Reads next line. Lines are terminated by {@code \n}, {@code \r} or {@code \r\n}.
+     *
+     * @return line without terminator or {@code null} at the end of file
+     * @throws IOException if the file cannot be read
+     */
+    String readLine() throws IOException {
+        long start = offset;
+        int length = 0;
+        while (true) {
+            if (!buffer.hasRemaining() && !fill()) {
+                return offset == start ? null : decode(length);
+            }
+            byte b = buffer.get();
+            offset++;
+            if (b == '\n') {
+                return decode(length);
+            }
+            if (b == '\r') {
+                if ((buffer.hasRemaining() || fill()) && buffer.get(buffer.position()) == '\n') {
+                    buffer.get();
+                    offset++;
+                }
+                return decode(length);
+            }
+            if (length == line.length) {
+                line = Arrays.copyOf(line, 2 * length);
+            }
+            line[length++] = b;
+        }
+    }
+
+    private String decode(int length) {
+        return new String(line, 0, length, StandardCharsets.UTF_8);
+    }
+
+    private boolean fill() throws IOException {
+        buffer.clear();
+        int read;
+        do {
+            read = channel.read(buffer);
+        } while (read == 0);
+        buffer.flip();
+        return read > 0;
+    }
+
+    /**
+     * Returns offset of the first byte after the last line read.
+     *
+     * @return byte offset in the file
+     */
+    long offset() {
+        return offset;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
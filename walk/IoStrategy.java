@@ -0,0 +1,93 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Ways of reading file contents into a {@link FileHasher}.
+ */
+enum IoStrategy {
+    /**
+     * Plain {@link InputStream} reads into a heap array.
+     */
+    STREAM {
+        @Override
+        void read(Path path, long size, FileHasher hasher, ByteBuffer buffer) throws IOException {
+            byte[] chunk = CHUNK.get();
+            try (InputStream in = Files.newInputStream(path)) {
+                int read;
+                while ((read = in.read(chunk)) != -1) {
+                    hasher.update(chunk, 0, read);
+                }
+            }
+        }
+    },
+    /**
+     * {@link FileChannel} reads into a reusable direct buffer.
+     */
+    CHANNEL {
+        @Override
+        void read(Path path, long size, FileHasher hasher, ByteBuffer buffer) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                buffer.clear();
+                while (channel.read(buffer) != -1) {
+                    buffer.flip();
+                    hasher.update(buffer);
+                    buffer.clear();
+                }
+            }
+        }
+    },
+    /**
+     * File is mapped into memory by windows of {@link #MAP_WINDOW} bytes, so no data is copied to user space.
+     */
+    MMAP {
+        @Override
+        void read(Path path, long size, FileHasher hasher, ByteBuffer buffer) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long length = channel.size();
+                for (long position = 0; position < length; position += MAP_WINDOW) {
+                    MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+                            Math.min(MAP_WINDOW, length - position));
+                    hasher.update(window);
+                }
+            }
+        }
+    };
+
+    private static final long MAP_WINDOW = 64L << 20;
+    private static final ThreadLocal<byte[]> CHUNK = ThreadLocal.withInitial(() -> new byte[8192]);
+
+    /**
+     * Feeds whole contents of the file to the hasher.
+     *
+     * @param path   file to read
+     * @param size   file size known to the caller
+     * @param hasher hasher to feed
+     * @param buffer reusable direct buffer of the current thread
+     * @throws IOException if the file cannot be read
+     */
+    abstract void read(Path path, long size, FileHasher hasher, ByteBuffer buffer) throws IOException;
+
+    /**
+     * Parses strategy name given on the command line.
+     *
+     * @param name {@code stream}, {@code channel} or {@code mmap}
+     * @return corresponding strategy
+     * @throws IllegalArgumentException for unknown names
+     */
+    static IoStrategy of(String name) {
+        for (IoStrategy strategy : values()) {
+            if (strategy.name().equalsIgnoreCase(name)) {
+                return strategy;
+            }
+        }
+        throw new IllegalArgumentException("unknown I/O strategy " + name);
+    }
+}
@@ -0,0 +1,51 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Incremental Jenkins one-at-a-time hash.
+ * Data may be fed in any number of chunks, the result does not depend on how it was split.
+ */
+class JenkinsHasher implements FileHasher {
+    private int hash;
+
+    @Override
+    public int length() {
+        return Integer.BYTES;
+    }
+
+    @Override
+    public void update(ByteBuffer buffer) {
+        int calcHash = hash;
+        while (buffer.hasRemaining()) {
+            calcHash += buffer.get() & 0xff;
+            calcHash += calcHash << 10;
+            calcHash ^= calcHash >>> 6;
+        }
+        hash = calcHash;
+    }
+
+    @Override
+    public void update(byte[] data, int offset, int length) {
+        int calcHash = hash;
+        for (int i = offset; i < offset + length; i++) {
+            calcHash += data[i] & 0xff;
+            calcHash += calcHash << 10;
+            calcHash ^= calcHash >>> 6;
+        }
+        hash = calcHash;
+    }
+
+    @Override
+    public void digest(byte[] out) {
+        int calcHash = hash;
+        calcHash += calcHash << 3;
+        calcHash ^= calcHash >>> 11;
+        calcHash += calcHash << 15;
+        hash = 0;
+        out[0] = (byte) (calcHash >>> 24);
+        out[1] = (byte) (calcHash >>> 16);
+        out[2] = (byte) (calcHash >>> 8);
+        out[3] = (byte) calcHash;
+    }
+}
@@ -0,0 +1,123 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+/**
+ * Computes hashes of files for {@link Walk}. Safe to use from several threads.
+ */
+class PathHasher {
+    private static final int BUFFER_SIZE = 8192;
+    /**
+     * Read buffer reused by every file hashed on the same thread.
+     */
+    private static final ThreadLocal<ByteBuffer> BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    private final WalkOptions options;
+    private final HashCache cache;
+    private final WalkMetrics metrics;
+    private final ThreadLocal<FileHasher> hashers;
+    private final int length;
+
+    /**
+     * Creates hasher.
+     *
+     * @param options options selecting the hash algorithm and the I/O strategy
+     * @param cache   cache of previously computed hashes, may be {@code null}
+     * @param metrics statistics to record every file to
+     */
+    PathHasher(WalkOptions options, HashCache cache, WalkMetrics metrics) {
+        this.options = options;
+        this.cache = cache;
+        this.metrics = metrics;
+        this.hashers = ThreadLocal.withInitial(options.algorithm::create);
+        this.length = options.algorithm.create().length();
+    }
+
+    /**
+     * Creates array to receive digests.
+     *
+     * @return array of the digest length
+     */
+    byte[] newDigest() {
+        return new byte[length];
+    }
+
+    /**
+     * Hashes file named by a line of the input file.
+     * Files that cannot be hashed get digest of zeros.
+     *
+     * @param pathToFile path to the file
+     * @param digest     array of {@link #newDigest()} length receiving the digest
+     */
+    void hash(String pathToFile, byte[] digest) {
+        try {
+            hash(Path.of(pathToFile.trim()), digest);
+        } catch (InvalidPathException e) {
+            Arrays.fill(digest, (byte) 0);
+            metrics.record(null, 0, WalkMetrics.Outcome.FAILED);
+        }
+    }
+
+    /**
+     * Hashes file. Files that cannot be hashed get digest of zeros.
+     *
+     * @param path   path to the file
+     * @param digest array of {@link #newDigest()} length receiving the digest
+     */
+    void hash(Path path, byte[] digest) {
+        long start = System.nanoTime();
+        WalkMetrics.Outcome outcome = tryHash(path, digest);
+        if (outcome == WalkMetrics.Outcome.FAILED) {
+            Arrays.fill(digest, (byte) 0);
+        }
+        metrics.record(path, System.nanoTime() - start, outcome);
+    }
+
+    private WalkMetrics.Outcome tryHash(Path path, byte[] digest) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            if (!attributes.isRegularFile()) {
+                return WalkMetrics.Outcome.FAILED;
+            }
+            if (!Files.isReadable(path)) {
+                System.err.println("Cannot read file: " + path);
+                return WalkMetrics.Outcome.FAILED;
+            }
+            String key = cache == null ? null : path.toAbsolutePath().normalize().toString();
+            if (cache != null) {
+                byte[] cached = cache.get(key, attributes);
+                if (cached != null) {
+                    System.arraycopy(cached, 0, digest, 0, length);
+                    return WalkMetrics.Outcome.CACHED;
+                }
+            }
+            long size = attributes.size();
+            FileHasher hasher = hashers.get();
+            try {
+                options.strategyFor(size).read(path, size, hasher, BUFFER.get());
+            } finally {
+                hasher.digest(digest);
+            }
+            metrics.read(size);
+            if (cache != null) {
+                try {
+                    cache.put(key, attributes, digest);
+                } catch (IOException e) {
+                    System.err.println("Cannot cache hash of " + path + ": " + e.getMessage());
+                }
+            }
+            return WalkMetrics.Outcome.HASHED;
+        } catch (IOException e) {
+            return WalkMetrics.Outcome.FAILED;
+        } catch (SecurityException e) {
+            System.err.println("Security error: " + e.getMessage());
+            return WalkMetrics.Outcome.FAILED;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryIteratorException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Hashes every file of a directory tree using fork-join traversal.
+ * Each directory is a separate task, so subdirectories are walked in parallel by work stealing.
+ * Results are written as soon as they are computed and the tree is never held in memory as a whole:
+ * a task keeps only the subdirectory tasks it has forked.
+ */
+class RecursiveWalker {
+    private final ForkJoinPool pool;
+    private final PathHasher hasher;
+    private final HashWriter writer;
+
+    /**
+     * Creates walker.
+     *
+     * @param pool   pool to run traversal on
+     * @param hasher hasher of files
+     * @param writer output
+     */
+    RecursiveWalker(ForkJoinPool pool, PathHasher hasher, HashWriter writer) {
+        this.pool = pool;
+        this.hasher = hasher;
+        this.writer = writer;
+    }
+
+    /**
+     * Writes hashes of all files under {@code root}. Returns when the whole tree is processed.
+     *
+     * @param root directory to walk
+     * @throws IOException if output cannot be written
+     */
+    void walk(Path root) throws IOException {
+        try {
+            pool.invoke(new DirectoryTask(root));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private void write(byte[] digest, Path path) {
+        try {
+            writer.write(digest, path.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private class DirectoryTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path directory;
+
+        DirectoryTask(Path directory) {
+            this.directory = directory;
+        }
+
+        @Override
+        protected void compute() {
+            List<DirectoryTask> subdirectories = new ArrayList<>();
+            byte[] digest = hasher.newDigest();
+            try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+                for (Path entry : entries) {
+                    if (Files.isDirectory(entry, LinkOption.NOFOLLOW_LINKS)) {
+                        DirectoryTask task = new DirectoryTask(entry);
+                        task.fork();
+                        subdirectories.add(task);
+                    } else {
+                        hasher.hash(entry, digest);
+                        write(digest, entry);
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException | SecurityException e) {
+                // a directory failing while its entries are read is reported like an unreadable one
+                write(hasher.newDigest(), directory);
+            }
+            for (DirectoryTask task : subdirectories) {
+                task.join();
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import java.nio.ByteBuffer;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-256 digest from the platform security provider.
+ */
+class Sha256Hasher implements FileHasher {
+    private final MessageDigest digest;
+
+    Sha256Hasher() {
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not supported", e);
+        }
+    }
+
+    @Override
+    public int length() {
+        return digest.getDigestLength();
+    }
+
+    @Override
+    public void update(ByteBuffer data) {
+        digest.update(data);
+    }
+
+    @Override
+    public void update(byte[] data, int offset, int length) {
+        digest.update(data, offset, length);
+    }
+
+    @Override
+    public void digest(byte[] out) {
+        try {
+            digest.digest(out, 0, length());
+        } catch (DigestException e) {
+            throw new IllegalArgumentException("Digest does not fit: " + e.getMessage(), e);
+        }
+    }
+}
@@ -1,19 +1,38 @@
 package info.kgeorgiy.ja.kupriyanov.walk;
 
 import java.io.*;
-import java.nio.charset.StandardCharsets;
+import java.nio.channels.FileChannel;
 
+import java.nio.file.Files;
 import java.nio.file.InvalidPathException;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 public class Walk {
+    /**
+     * Number of hashes that may be in flight per worker thread before the reader waits for the writer.
+     */
+    private static final int WINDOW_PER_THREAD = 16;
+
     public static void main(String[] args) {
-        if (args == null || args.length != 2 || args[0] == null || args[1] == null) {
-            System.err.println("args should be in the format like: <inputFile> <outputFile>");
+        WalkOptions options;
+        try {
+            options = WalkOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println("Wrong arguments: " + e.getMessage());
+            System.err.println("args should be in the format like: " + WalkOptions.USAGE);
             return;
         }
-        String inputFile = args[0];
-        String outputFile = args[1];
+        String inputFile = options.inputFile;
+        String outputFile = options.outputFile;
         try {
             Path.of(inputFile);
             Path.of(outputFile);
@@ -22,68 +41,163 @@ public class Walk {
             return;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(inputFile, StandardCharsets.UTF_8))) {
-            File outputFileObj = new File(outputFile);
-            File parentDirectory = outputFileObj.getParentFile();
-            if (parentDirectory != null && !parentDirectory.exists()) {
-                parentDirectory.mkdirs();
-            }
-            try (BufferedWriter writer = new BufferedWriter(new FileWriter(outputFile, StandardCharsets.UTF_8))) {
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    String calcHash = calculateHash(line.trim());
-                    writer.write(calcHash + " " + line + "\n");
+        WalkMetrics metrics = new WalkMetrics();
+        if (options.jmx) {
+            metrics.register();
+        }
+        if (options.progressSeconds > 0) {
+            metrics.startProgress(options.progressSeconds);
+        }
+        try {
+            Path checkpointFile = options.checkpointFile == null ? null : Path.of(options.checkpointFile);
+            Checkpoint.State resumed = options.resume ? Checkpoint.load(checkpointFile) : null;
+            try (InputLines reader = new InputLines(FileChannel.open(Path.of(inputFile), StandardOpenOption.READ),
+                    resumed == null ? 0 : resumed.input())) {
+                File outputFileObj = new File(outputFile);
+                File parentDirectory = outputFileObj.getParentFile();
+                if (parentDirectory != null && !parentDirectory.exists()) {
+                    parentDirectory.mkdirs();
+                }
+                FileChannel output = resumed == null
+                        ? FileChannel.open(Path.of(outputFile),
+                        StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)
+                        : FileChannel.open(Path.of(outputFile), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                try (HashWriter writer = new HashWriter(output);
+                     HashCache cache = options.cacheFile == null ? null
+                             : HashCache.open(Path.of(options.cacheFile), options.algorithm.name(), options.rebuildCache)) {
+                    if (resumed != null) {
+                        if (output.size() < resumed.output()) {
+                            throw new IOException("Output is shorter than the checkpoint, cannot resume");
+                        }
+                        output.truncate(resumed.output());
+                        output.position(resumed.output());
+                    }
+                    Checkpoint checkpoint = new Checkpoint(checkpointFile, options.checkpointSeconds, writer, output);
+                    PathHasher hasher = new PathHasher(options, cache, metrics);
+                    ForkJoinPool pool = options.recursive ? new ForkJoinPool(options.threads) : null;
+                    try {
+                        RecursiveWalker walker = pool == null ? null : new RecursiveWalker(pool, hasher, writer);
+                        if (options.threads == 1) {
+                            walkSequential(reader, writer, walker, hasher, checkpoint);
+                        } else {
+                            walkParallel(reader, writer, walker, hasher, checkpoint, options.threads);
+                        }
+                    } finally {
+                        if (pool != null) {
+                            pool.shutdownNow();
+                        }
+                    }
+                    checkpoint.complete();
                 }
             }
-        } catch (FileNotFoundException e) {
+        } catch (NoSuchFileException e) {
             System.err.println("Input file not found: " + e.getMessage());
-        } catch (IOException e) {
+        } catch (IOException | InvalidPathException e) {
             System.err.println("Error while processing files: " + e.getMessage());
         } catch (SecurityException e) {
             System.err.println("Security exception occurred: " + e.getMessage());
+        } finally {
+            metrics.stop();
+        }
+        if (options.reportFile != null) {
+            try {
+                metrics.writeReport(Path.of(options.reportFile));
+            } catch (IOException | InvalidPathException e) {
+                System.err.println("Cannot write report: " + e.getMessage());
+            }
         }
     }
 
-    private static String calculateHash(String pathToFile) {
-        try {
-            String cleanedPath = pathToFile.trim();
-            File file = new File(cleanedPath);
-            if (!file.isFile() || !file.exists()) {
-                return "00000000";
-            }
-            if (!file.canRead()) {
-                System.err.println("Cannot read file: " + pathToFile);
-                return "00000000";
+    private static void walkSequential(InputLines reader, HashWriter writer, RecursiveWalker walker,
+                                       PathHasher hasher, Checkpoint checkpoint) throws IOException {
+        byte[] digest = hasher.newDigest();
+        String line;
+        while ((line = reader.readLine()) != null) {
+            Path directory = directoryToWalk(line, walker);
+            if (directory != null) {
+                walker.walk(directory);
+            } else {
+                hasher.hash(line, digest);
+                writer.write(digest, line);
             }
-            if (file.length() == 0) {
-                return "00000000";
+            checkpoint.reached(reader.offset());
+        }
+    }
+
+    /**
+     * Returns directory that should be expanded instead of hashing the line, or {@code null}.
+     */
+    private static Path directoryToWalk(String line, RecursiveWalker walker) {
+        if (walker == null) {
+            return null;
+        }
+        try {
+            Path path = Path.of(line.trim());
+            return Files.isDirectory(path) ? path : null;
+        } catch (InvalidPathException | SecurityException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Line being hashed and offset of the next input line.
+     */
+    private record Pending(String line, long next, Future<byte[]> digest) {
+    }
+
+    /**
+     * Hashes files on a pool of {@code threads} workers. Results are written in input order:
+     * pending hashes are kept in a bounded window and the oldest one is written as soon as the window is full.
+     * Before a directory is expanded the window is drained, so its files appear right after preceding lines.
+     */
+    private static void walkParallel(InputLines reader, HashWriter writer, RecursiveWalker walker,
+                                     PathHasher hasher, Checkpoint checkpoint, int threads) throws IOException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        Deque<Pending> window = new ArrayDeque<>();
+        int capacity = threads * WINDOW_PER_THREAD;
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                Path directory = directoryToWalk(line, walker);
+                if (directory != null) {
+                    while (!window.isEmpty()) {
+                        writePending(window.pollFirst(), writer, hasher, checkpoint);
+                    }
+                    walker.walk(directory);
+                    checkpoint.reached(reader.offset());
+                    continue;
+                }
+                final String path = line;
+                window.addLast(new Pending(line, reader.offset(), executor.submit(() -> {
+                    byte[] digest = hasher.newDigest();
+                    hasher.hash(path, digest);
+                    return digest;
+                })));
+                if (window.size() >= capacity) {
+                    writePending(window.pollFirst(), writer, hasher, checkpoint);
+                }
             }
-            byte[] data = new byte[(int) file.length()];
-            try (FileInputStream fis = new FileInputStream(file)) {
-                fis.read(data);
+            while (!window.isEmpty()) {
+                writePending(window.pollFirst(), writer, hasher, checkpoint);
             }
-            int calcHash = jenkinsHash(data);
-            return String.format("%08x", calcHash);
-        } catch (IOException e) {
-            return "00000000";
-        } catch (SecurityException e) {
-            System.err.println("Security error: " + e.getMessage());
-            return "00000000";
+        } finally {
+            executor.shutdownNow();
         }
     }
 
-    private static int jenkinsHash(byte[] data) {
-        int calcHash = 0;
-        if (data != null) {
-            for (final byte b : data) {
-                calcHash += b & 0xff;
-                calcHash += calcHash << 10;
-                calcHash ^= calcHash >>> 6;
-            }
-            calcHash += calcHash << 3;
-            calcHash ^= calcHash >>> 11;
-            calcHash += calcHash << 15;
+    private static void writePending(Pending pending, HashWriter writer, PathHasher hasher,
+                                     Checkpoint checkpoint) throws IOException {
+        byte[] digest;
+        try {
+            digest = pending.digest().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while hashing " + pending.line());
+        } catch (ExecutionException e) {
+            System.err.println("Error while hashing " + pending.line() + ": " + e.getCause());
+            digest = hasher.newDigest();
         }
-        return calcHash;
+        writer.write(digest, pending.line());
+        checkpoint.reached(pending.next());
     }
 }
@@ -0,0 +1,277 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live statistics of a {@link Walk} run: throughput, per-file latency histogram, errors and the slowest files.
+ * Recording is lock-free except when a file gets into the slowest list.
+ */
+class WalkMetrics implements WalkMetricsMBean {
+    /**
+     * Result of hashing a single file.
+     */
+    enum Outcome {
+        HASHED, CACHED, FAILED
+    }
+
+    private static final int BUCKETS = 40;
+    private static final int SLOWEST = 10;
+
+    private record Slow(long micros, String path) {
+    }
+
+    private final long start = System.nanoTime();
+    private final LongAdder files = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final AtomicLongArray histogram = new AtomicLongArray(BUCKETS);
+    private final PriorityQueue<Slow> slowest = new PriorityQueue<>(Comparator.comparingLong(Slow::micros));
+    private volatile long slowThreshold;
+    private ObjectName name;
+    private ScheduledExecutorService progress;
+
+    /**
+     * Records bytes read and hashed.
+     *
+     * @param size number of bytes
+     */
+    void read(long size) {
+        bytes.add(size);
+    }
+
+    /**
+     * Records processing of a file.
+     *
+     * @param path    processed file, {@code null} if the input line is not a valid path
+     * @param nanos   time spent on the file
+     * @param outcome how the file was processed
+     */
+    void record(Path path, long nanos, Outcome outcome) {
+        files.increment();
+        if (outcome == Outcome.CACHED) {
+            skipped.increment();
+        } else if (outcome == Outcome.FAILED) {
+            errors.increment();
+        }
+        long micros = nanos / 1000;
+        histogram.incrementAndGet(Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(micros)));
+        if (micros > slowThreshold && path != null) {
+            synchronized (slowest) {
+                slowest.add(new Slow(micros, path.toString()));
+                if (slowest.size() > SLOWEST) {
+                    slowest.poll();
+                    slowThreshold = slowest.peek().micros();
+                }
+            }
+        }
+    }
+
+    /**
+     * Registers this object in the platform MBean server.
+     * Failures, including denial by a security manager, are reported and otherwise ignored.
+     */
+    void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            name = new ObjectName("info.kgeorgiy.ja.kupriyanov.walk:type=WalkMetrics,id=" + ProcessHandle.current().pid());
+            server.registerMBean(this, name);
+        } catch (JMException | SecurityException e) {
+            System.err.println("Cannot register metrics MBean: " + e.getMessage());
+            name = null;
+        }
+    }
+
+    /**
+     * Starts printing a summary line to {@code System.err} every {@code seconds} seconds.
+     *
+     * @param seconds period between summaries
+     */
+    void startProgress(int seconds) {
+        progress = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "walk-progress");
+            thread.setDaemon(true);
+            return thread;
+        });
+        progress.scheduleAtFixedRate(() -> System.err.println(summary()), seconds, seconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Stops progress output and unregisters the MBean.
+     */
+    void stop() {
+        if (progress != null) {
+            progress.shutdownNow();
+        }
+        if (name != null) {
+            try {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+            } catch (JMException | SecurityException e) {
+                System.err.println("Cannot unregister metrics MBean: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * @return one-line human-readable summary
+     */
+    String summary() {
+        return String.format("files: %d (%.1f/s), bytes: %d (%.1f MB/s), errors: %d, skipped: %d, p50: %d us, p99: %d us",
+                getFiles(), getFilesPerSecond(), getBytes(), getBytesPerSecond() / 1e6,
+                getErrors(), getSkipped(), getLatencyP50Micros(), getLatencyP99Micros());
+    }
+
+    /**
+     * Writes final report as JSON.
+     *
+     * @param file report file
+     * @throws IOException if the report cannot be written
+     */
+    void writeReport(Path file) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("{\n");
+            writer.write("  \"seconds\": " + seconds() + ",\n");
+            writer.write("  \"files\": " + getFiles() + ",\n");
+            writer.write("  \"bytes\": " + getBytes() + ",\n");
+            writer.write("  \"errors\": " + getErrors() + ",\n");
+            writer.write("  \"skipped\": " + getSkipped() + ",\n");
+            writer.write("  \"filesPerSecond\": " + getFilesPerSecond() + ",\n");
+            writer.write("  \"bytesPerSecond\": " + getBytesPerSecond() + ",\n");
+            writer.write("  \"latencyP50Micros\": " + getLatencyP50Micros() + ",\n");
+            writer.write("  \"latencyP99Micros\": " + getLatencyP99Micros() + ",\n");
+            writer.write("  \"latencyHistogram\": [");
+            long[] counts = getLatencyHistogram();
+            for (int i = 0; i < counts.length; i++) {
+                writer.write((i == 0 ? "" : ", ") + counts[i]);
+            }
+            writer.write("],\n");
+            writer.write("  \"slowest\": [");
+            List<Slow> slow = slowest();
+            for (int i = 0; i < slow.size(); i++) {
+                writer.write((i == 0 ? "\n" : ",\n") + "    {\"micros\": " + slow.get(i).micros()
+                        + ", \"path\": \"" + escape(slow.get(i).path()) + "\"}");
+            }
+            writer.write(slow.isEmpty() ? "]\n" : "\n  ]\n");
+            writer.write("}\n");
+        }
+    }
+
+    private static String escape(String text) {
+        StringBuilder builder = new StringBuilder(text.length());
+        for (char c : text.toCharArray()) {
+            switch (c) {
+                case '"' -> builder.append("\\\"");
+                case '\\' -> builder.append("\\\\");
+                default -> {
+                    if (c < 0x20) {
+                        builder.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        builder.append(c);
+                    }
+                }
+            }
+        }
+        return builder.toString();
+    }
+
+    private double seconds() {
+        return Math.max(1, System.nanoTime() - start) / 1e9;
+    }
+
+    private List<Slow> slowest() {
+        List<Slow> result;
+        synchronized (slowest) {
+            result = new ArrayList<>(slowest);
+        }
+        result.sort(Comparator.comparingLong(Slow::micros).reversed());
+        return result;
+    }
+
+    private long percentile(double fraction) {
+        long[] counts = getLatencyHistogram();
+        long total = 0;
+        for (long count : counts) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(total * fraction);
+        long seen = 0;
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return 1L << i;
+            }
+        }
+        return 0;
+    }
+
+    @Override
+    public long getFiles() {
+        return files.sum();
+    }
+
+    @Override
+    public long getBytes() {
+        return bytes.sum();
+    }
+
+    @Override
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    @Override
+    public long getSkipped() {
+        return skipped.sum();
+    }
+
+    @Override
+    public double getFilesPerSecond() {
+        return getFiles() / seconds();
+    }
+
+    @Override
+    public double getBytesPerSecond() {
+        return getBytes() / seconds();
+    }
+
+    @Override
+    public long[] getLatencyHistogram() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = histogram.get(i);
+        }
+        return counts;
+    }
+
+    @Override
+    public long getLatencyP50Micros() {
+        return percentile(0.5);
+    }
+
+    @Override
+    public long getLatencyP99Micros() {
+        return percentile(0.99);
+    }
+
+    @Override
+    public String[] getSlowestPaths() {
+        return slowest().stream().map(slow -> slow.micros() + " " + slow.path()).toArray(String[]::new);
+    }
+}
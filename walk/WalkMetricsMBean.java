@@ -0,0 +1,56 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+/**
+ * JMX view of {@link WalkMetrics}.
+ */
+public interface WalkMetricsMBean {
+    /**
+     * @return number of files processed so far, including failed and cached ones
+     */
+    long getFiles();
+
+    /**
+     * @return number of bytes read and hashed
+     */
+    long getBytes();
+
+    /**
+     * @return number of files that could not be hashed
+     */
+    long getErrors();
+
+    /**
+     * @return number of files whose hash was taken from the cache without reading them
+     */
+    long getSkipped();
+
+    /**
+     * @return average files per second since start
+     */
+    double getFilesPerSecond();
+
+    /**
+     * @return average bytes per second since start
+     */
+    double getBytesPerSecond();
+
+    /**
+     * @return counts of per-file latencies, bucket {@code i} holds latencies in {@code [2^(i-1), 2^i)} microseconds
+     */
+    long[] getLatencyHistogram();
+
+    /**
+     * @return median per-file latency in microseconds, an upper bound taken from the histogram
+     */
+    long getLatencyP50Micros();
+
+    /**
+     * @return 99th percentile of per-file latency in microseconds, an upper bound taken from the histogram
+     */
+    long getLatencyP99Micros();
+
+    /**
+     * @return slowest files as {@code <microseconds> <path>}, slowest first
+     */
+    String[] getSlowestPaths();
+}
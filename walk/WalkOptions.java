@@ -0,0 +1,112 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+/**
+ * Command line options of {@link Walk}.
+ * Format is described by {@link #USAGE}.
+ */
+class WalkOptions {
+    static final String USAGE = "[--threads <n>] [--recursive] [--hash jenkins|xxhash64|crc32c|sha256] [--io stream|channel|mmap] [--mmap-threshold <bytes>] "
+            + "[--cache <file> [--rebuild-cache]] [--progress <seconds>] [--report <file>] [--jmx] "
+            + "[--checkpoint <file> [--checkpoint-interval <seconds>] [--resume]] <inputFile> <outputFile>";
+
+    String inputFile;
+    String outputFile;
+    int threads = 1;
+    boolean recursive;
+    HashAlgorithm algorithm = HashAlgorithm.JENKINS;
+    IoStrategy io = IoStrategy.CHANNEL;
+    long mmapThreshold = 1 << 20;
+    String cacheFile;
+    boolean rebuildCache;
+    int progressSeconds;
+    String reportFile;
+    boolean jmx;
+    String checkpointFile;
+    int checkpointSeconds = 10;
+    boolean resume;
+
+    /**
+     * Parses command line arguments.
+     *
+     * @param args arguments passed to {@link Walk#main(String[])}
+     * @return parsed options
+     * @throws IllegalArgumentException if arguments are malformed
+     */
+    static WalkOptions parse(String[] args) {
+        if (args == null) {
+            throw new IllegalArgumentException("no arguments");
+        }
+        WalkOptions options = new WalkOptions();
+        int i = 0;
+        while (i < args.length && args[i] != null && args[i].startsWith("--")) {
+            String option = args[i++];
+            switch (option) {
+                case "--threads" -> options.threads = positive(option, value(args, i++, option));
+                case "--recursive" -> options.recursive = true;
+                case "--hash" -> options.algorithm = HashAlgorithm.of(value(args, i++, option));
+                case "--io" -> options.io = IoStrategy.of(value(args, i++, option));
+                case "--mmap-threshold" -> options.mmapThreshold = nonNegative(option, value(args, i++, option));
+                case "--cache" -> options.cacheFile = value(args, i++, option);
+                case "--rebuild-cache" -> options.rebuildCache = true;
+                case "--progress" -> options.progressSeconds = positive(option, value(args, i++, option));
+                case "--report" -> options.reportFile = value(args, i++, option);
+                case "--jmx" -> options.jmx = true;
+                case "--checkpoint" -> options.checkpointFile = value(args, i++, option);
+                case "--checkpoint-interval" -> options.checkpointSeconds = positive(option, value(args, i++, option));
+                case "--resume" -> options.resume = true;
+                default -> throw new IllegalArgumentException("unknown option " + option);
+            }
+        }
+        if (options.resume && options.checkpointFile == null) {
+            throw new IllegalArgumentException("--resume requires --checkpoint");
+        }
+        if (args.length - i != 2 || args[i] == null || args[i + 1] == null) {
+            throw new IllegalArgumentException("expected <inputFile> <outputFile>");
+        }
+        options.inputFile = args[i];
+        options.outputFile = args[i + 1];
+        return options;
+    }
+
+    /**
+     * Chooses I/O strategy for a file. Mapping small files costs more than reading them,
+     * so files below {@link #mmapThreshold} are read through a channel even in {@link IoStrategy#MMAP} mode.
+     *
+     * @param size file size
+     * @return strategy to read the file with
+     */
+    IoStrategy strategyFor(long size) {
+        return io == IoStrategy.MMAP && size < mmapThreshold ? IoStrategy.CHANNEL : io;
+    }
+
+    private static String value(String[] args, int index, String option) {
+        if (index >= args.length || args[index] == null) {
+            throw new IllegalArgumentException("missing value for " + option);
+        }
+        return args[index];
+    }
+
+    private static int positive(String option, String value) {
+        try {
+            int result = Integer.parseInt(value);
+            if (result < 1) {
+                throw new IllegalArgumentException(option + " should be positive");
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("wrong number for " + option + ": " + value);
+        }
+    }
+
+    private static long nonNegative(String option, String value) {
+        try {
+            long result = Long.parseLong(value);
+            if (result < 0) {
+                throw new IllegalArgumentException(option + " should not be negative");
+            }
+            return result;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("wrong number for " + option + ": " + value);
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * xxHash64 with zero seed. Input is consumed in 32-byte stripes of four little-endian 64-bit words,
+ * a stripe split between two updates is completed in an internal buffer.
+ */
+class Xxh64Hasher implements FileHasher {
+    private static final long PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME3 = 0x165667B19E3779F9L;
+    private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME5 = 0x27D4EB2F165667C5L;
+    private static final int STRIPE = 32;
+
+    private final byte[] pending = new byte[STRIPE];
+    private final ByteBuffer pendingView = ByteBuffer.wrap(pending).order(ByteOrder.LITTLE_ENDIAN);
+    private int pendingSize;
+    private long total;
+    private long v1;
+    private long v2;
+    private long v3;
+    private long v4;
+
+    Xxh64Hasher() {
+        reset();
+    }
+
+    @Override
+    public int length() {
+        return Long.BYTES;
+    }
+
+    @Override
+    public void update(ByteBuffer data) {
+        ByteOrder order = data.order();
+        data.order(ByteOrder.LITTLE_ENDIAN);
+        total += data.remaining();
+        if (pendingSize > 0) {
+            int count = Math.min(STRIPE - pendingSize, data.remaining());
+            data.get(pending, pendingSize, count);
+            pendingSize += count;
+            if (pendingSize < STRIPE) {
+                data.order(order);
+                return;
+            }
+            stripe(pendingView.clear());
+            pendingSize = 0;
+        }
+        while (data.remaining() >= STRIPE) {
+            stripe(data);
+        }
+        pendingSize = data.remaining();
+        data.get(pending, 0, pendingSize);
+        data.order(order);
+    }
+
+    private void stripe(ByteBuffer data) {
+        v1 = round(v1, data.getLong());
+        v2 = round(v2, data.getLong());
+        v3 = round(v3, data.getLong());
+        v4 = round(v4, data.getLong());
+    }
+
+    @Override
+    public void digest(byte[] out) {
+        long hash;
+        if (total >= STRIPE) {
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            hash = merge(hash, v1);
+            hash = merge(hash, v2);
+            hash = merge(hash, v3);
+            hash = merge(hash, v4);
+        } else {
+            hash = PRIME5;
+        }
+        hash += total;
+
+        ByteBuffer tail = pendingView.clear().limit(pendingSize);
+        while (tail.remaining() >= Long.BYTES) {
+            hash ^= round(0, tail.getLong());
+            hash = Long.rotateLeft(hash, 27) * PRIME1 + PRIME4;
+        }
+        if (tail.remaining() >= Integer.BYTES) {
+            hash ^= (tail.getInt() & 0xFFFFFFFFL) * PRIME1;
+            hash = Long.rotateLeft(hash, 23) * PRIME2 + PRIME3;
+        }
+        while (tail.hasRemaining()) {
+            hash ^= (tail.get() & 0xFFL) * PRIME5;
+            hash = Long.rotateLeft(hash, 11) * PRIME1;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= PRIME2;
+        hash ^= hash >>> 29;
+        hash *= PRIME3;
+        hash ^= hash >>> 32;
+
+        for (int i = Long.BYTES - 1; i >= 0; i--) {
+            out[i] = (byte) hash;
+            hash >>>= 8;
+        }
+        reset();
+    }
+
+    private void reset() {
+        v1 = PRIME1 + PRIME2;
+        v2 = PRIME2;
+        v3 = 0;
+        v4 = -PRIME1;
+        total = 0;
+        pendingSize = 0;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME1;
+    }
+
+    private static long merge(long acc, long value) {
+        acc ^= round(0, value);
+        return acc * PRIME1 + PRIME4;
+    }
+}
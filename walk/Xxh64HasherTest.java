@@ -0,0 +1,63 @@
+package info.kgeorgiy.ja.kupriyanov.walk;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.Random;
+
+public class Xxh64HasherTest {
+    private final Xxh64Hasher hasher = new Xxh64Hasher();
+
+    @Test
+    public void testKnownVectors() {
+        Assert.assertEquals("ef46db3751d8e999", hash(""));
+        Assert.assertEquals("d24ec4f1a98c6e5b", hash("a"));
+        Assert.assertEquals("44bc2cf5ad770999", hash("abc"));
+        Assert.assertEquals("0b242d361fda71bc", hash("The quick brown fox jumps over the lazy dog"));
+    }
+
+    @Test
+    public void testChunkedUpdates() {
+        Random random = new Random(2378);
+        for (int size : new int[]{1, 7, 31, 32, 33, 100, 1000}) {
+            byte[] data = new byte[size];
+            random.nextBytes(data);
+            hasher.update(data, 0, size);
+            byte[] expected = digest();
+            for (int offset = 0; offset < size; ) {
+                int length = Math.min(size - offset, 1 + random.nextInt(40));
+                ByteBuffer chunk = ByteBuffer.allocateDirect(length).order(ByteOrder.BIG_ENDIAN);
+                chunk.put(data, offset, length).flip();
+                hasher.update(chunk);
+                Assert.assertEquals(ByteOrder.BIG_ENDIAN, chunk.order());
+                Assert.assertFalse(chunk.hasRemaining());
+                offset += length;
+            }
+            Assert.assertArrayEquals(expected, digest());
+        }
+    }
+
+    @Test
+    public void testDigestResets() {
+        String first = hash("abc");
+        hasher.update(new byte[]{1, 2, 3}, 0, 3);
+        digest();
+        Assert.assertEquals(first, hash("abc"));
+    }
+
+    private String hash(String text) {
+        byte[] bytes = text.getBytes(StandardCharsets.US_ASCII);
+        hasher.update(bytes, 0, bytes.length);
+        return HexFormat.of().formatHex(digest());
+    }
+
+    private byte[] digest() {
+        byte[] out = new byte[hasher.length()];
+        hasher.digest(out);
+        return out;
+    }
+}